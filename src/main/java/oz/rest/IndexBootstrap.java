@@ -0,0 +1,120 @@
+package oz.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+
+import oz.rest.models.CompoundIndex;
+import oz.rest.models.GeoIndex;
+import oz.rest.models.TextIndex;
+
+/**
+ * Creates the indexes the models declare with {@link CompoundIndex},
+ * {@link GeoIndex} and {@link TextIndex}, including the ones declared on their
+ * superclasses.
+ */
+public class IndexBootstrap {
+    private static final Logger logger = LoggerFactory.getLogger(IndexBootstrap.class);
+
+    public static List<IndexModel> indexModels(Class<?> modelClass) {
+        List<IndexModel> models = new ArrayList<>();
+
+        for (Class<?> type = modelClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (CompoundIndex index : type.getDeclaredAnnotationsByType(CompoundIndex.class)) {
+                models.add(new IndexModel(keys(index), new IndexOptions()
+                        .unique(index.unique())
+                        .background(true)));
+            }
+
+            GeoIndex geo = type.getDeclaredAnnotation(GeoIndex.class);
+            if (geo != null) {
+                models.add(new IndexModel(Indexes.geo2dsphere(geo.value()), new IndexOptions().background(true)));
+            }
+
+            TextIndex text = type.getDeclaredAnnotation(TextIndex.class);
+            if (text != null) {
+                models.add(textIndexModel(text));
+            }
+        }
+
+        return models;
+    }
+
+    static IndexModel textIndexModel(TextIndex index) {
+        if (index.weights().length != 0 && index.weights().length != index.fields().length) {
+            throw new IllegalArgumentException("A text index needs one weight per field");
+        }
+
+        Document keys = new Document();
+        Document weights = new Document();
+
+        for (int i = 0; i < index.fields().length; i++) {
+            keys.append(index.fields()[i], "text");
+            weights.append(index.fields()[i], index.weights().length == 0 ? 1 : index.weights()[i]);
+        }
+
+        return new IndexModel(keys, new IndexOptions()
+                .weights(weights)
+                .background(true));
+    }
+
+    static Document keys(CompoundIndex index) {
+        Document keys = new Document();
+
+        for (String key : index.keys()) {
+            if (key.startsWith("-")) {
+                keys.append(key.substring(1), -1);
+            } else {
+                keys.append(key, 1);
+            }
+        }
+
+        return keys;
+    }
+
+    /**
+     * Drops the named index if the collection still has it, for indexes an
+     * older version created that no longer fit the model.
+     */
+    public static void dropIndex(MongoCollection<?> collection, String name) {
+        try {
+            for (Document index : collection.listIndexes()) {
+                if (name.equals(index.getString("name"))) {
+                    collection.dropIndex(name);
+                    logger.info("Dropped the stale index {} of {}", name, collection.getNamespace());
+                    return;
+                }
+            }
+        } catch (MongoException e) {
+            logger.error("Could not drop the index " + name + " of " + collection.getNamespace(), e);
+        }
+    }
+
+    /**
+     * Creates all of the model's indexes in one round-trip. Indexes that already
+     * exist are left alone by mongo, so this is safe to run on every startup.
+     */
+    public static void createIndexes(MongoCollection<?> collection, Class<?> modelClass) {
+        List<IndexModel> models = indexModels(modelClass);
+
+        if (models.isEmpty()) {
+            return;
+        }
+
+        try {
+            collection.createIndexes(models);
+        } catch (MongoException e) {
+            // the app still works without them, just slower, so don't take it down
+            logger.error("Could not create the indexes of " + collection.getNamespace(), e);
+        }
+    }
+}
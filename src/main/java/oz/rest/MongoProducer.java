@@ -2,9 +2,6 @@ package oz.rest;
 
 import java.util.Map;
 
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.IndexOptions;
-import org.bson.Document;
 import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
@@ -15,11 +12,18 @@ import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
 
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
 import jakarta.enterprise.inject.Disposes;
 import jakarta.enterprise.inject.Produces;
+import oz.rest.codecs.ModelCodecProvider;
 import oz.rest.models.Adopter;
+import oz.rest.models.Pet;
 import oz.rest.models.Shelter;
+import oz.rest.monitoring.QueryStats;
 
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
 import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
@@ -27,14 +31,21 @@ import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
 
 @ApplicationScoped
 public class MongoProducer {
+    @Resource
+    ManagedExecutorService executor;
+
+    // the client pools its connections, so everyone shares the one client
     @Produces
-    public MongoClient createMongoClient() {
+    @ApplicationScoped
+    public MongoClient createMongoClient(QueryStats queryStats) {
         Map<String, String> env = System.getenv();
         String username = env.get("MONGO_INITDB_ROOT_USERNAME");
         String password = env.get("MONGO_INITDB_ROOT_PASSWORD");
         var mongoSettingsBuilder = MongoClientSettings.builder();
         var connectionString = new ConnectionString("mongodb://" + username + ":" + password + "@mongo:27017");
         mongoSettingsBuilder.applyConnectionString(connectionString);
+        // times every query by its shape, see /api/admin/query-stats
+        mongoSettingsBuilder.addCommandListener(queryStats);
         var mongoClientSettings = mongoSettingsBuilder.build();
 
         var mongoClient = MongoClients.create(mongoClientSettings);
@@ -42,33 +53,33 @@ public class MongoProducer {
         return mongoClient;
     }
 
+    // application scoped so the codec registry is built once rather than for
+    // every injection point
     @Produces
+    @ApplicationScoped
     public MongoDatabase createDB(MongoClient mongoClient) {
-        // allows us to use POJO, inserting objects directly instead of manually
+        // allows us to use POJO, inserting objects directly instead of manually.
+        // the models themselves have hand-written codecs, which are asked first so
+        // the reflective pojo codec is only a fallback for anything else
         CodecProvider pojoCodecProvider = fromProviders(PojoCodecProvider.builder().automatic(true).build());
-        CodecRegistry pojoCodecRegistry = fromRegistries(getDefaultCodecRegistry(), fromProviders(pojoCodecProvider));
-
-        MongoDatabase database = mongoClient.getDatabase("PlaceholderAppName").withCodecRegistry(pojoCodecRegistry);
-
-        // on creating a new db, we would run an initializer
-        initializeCollections(database);
-
-        return database;
-    }
-
-    private void initializeCollections(MongoDatabase database) {
-        createUniqueEmailAdopter(database.getCollection("Adopters", Adopter.class));
-        createUniqueEmailShelter(database.getCollection("Shelters", Shelter.class));
-    }
+        CodecRegistry pojoCodecRegistry = fromRegistries(getDefaultCodecRegistry(),
+                fromProviders(new ModelCodecProvider(), pojoCodecProvider));
 
-    private void createUniqueEmailAdopter(MongoCollection<Adopter> adopterCollection) {
-        IndexOptions indexOptions = new IndexOptions().unique(true);
-        adopterCollection.createIndex(new Document("emailAddress", 1), indexOptions);
+        return mongoClient.getDatabase("PlaceholderAppName").withCodecRegistry(pojoCodecRegistry);
     }
 
-    private void createUniqueEmailShelter(MongoCollection<Shelter> shelterCollection) {
-        IndexOptions indexOptions = new IndexOptions().unique(true);
-        shelterCollection.createIndex(new Document("emailAddress", 1), indexOptions);
+    // runs once when the application starts instead of whenever a database is
+    // injected. the indexes the models declare are built in the background, so a
+    // slow build on a big collection doesn't hold up startup
+    void initializeCollections(@Observes Startup startup, MongoDatabase database) {
+        executor.execute(() -> {
+            // older versions indexed emailAddress, which adopters are stored
+            // without, so it held every adopter's null and only one could be added
+            IndexBootstrap.dropIndex(database.getCollection("Adopters"), "emailAddress_1");
+            IndexBootstrap.createIndexes(database.getCollection("Adopters", Adopter.class), Adopter.class);
+            IndexBootstrap.createIndexes(database.getCollection("Shelters", Shelter.class), Shelter.class);
+            IndexBootstrap.createIndexes(database.getCollection("Pets", Pet.class), Pet.class);
+        });
     }
 
     public void close(@Disposes MongoClient toClose) {
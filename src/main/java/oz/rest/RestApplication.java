@@ -1,9 +1,16 @@
 package oz.rest;
 
+import org.eclipse.microprofile.auth.LoginConfig;
+
+import jakarta.annotation.security.DeclareRoles;
 import jakarta.ws.rs.ApplicationPath;
 import jakarta.ws.rs.core.Application;
 
+// resources marked @RolesAllowed take the roles from the groups claim of the
+// bearer token, checked by the mpJwt element in server.xml
 @ApplicationPath("/api")
+@LoginConfig(authMethod = "MP-JWT")
+@DeclareRoles({ "admin" })
 public class RestApplication extends Application {
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,38 @@
+package oz.rest.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import oz.rest.models.Adopter;
+
+public class AdopterCodec extends ModelCodec<Adopter> {
+    @Override
+    public Class<Adopter> getEncoderClass() {
+        return Adopter.class;
+    }
+
+    @Override
+    protected Adopter newInstance() {
+        return new Adopter();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, Adopter value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+        writeString(writer, "email_address", value.getEmailAddress());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, Adopter value, DecoderContext decoderContext) {
+        switch (name) {
+            case "name" -> value.setName(reader.readString());
+            case "email_address" -> value.setEmailAddress(reader.readString());
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
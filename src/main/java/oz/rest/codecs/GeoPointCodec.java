@@ -0,0 +1,67 @@
+package oz.rest.codecs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import oz.rest.models.GeoPoint;
+
+public class GeoPointCodec implements Codec<GeoPoint> {
+    @Override
+    public Class<GeoPoint> getEncoderClass() {
+        return GeoPoint.class;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, GeoPoint value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writer.writeString("type", value.getType());
+
+        writer.writeStartArray("coordinates");
+        for (double coordinate : value.getCoordinates()) {
+            writer.writeDouble(coordinate);
+        }
+        writer.writeEndArray();
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public GeoPoint decode(BsonReader reader, DecoderContext decoderContext) {
+        GeoPoint value = new GeoPoint();
+
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            switch (reader.readName()) {
+                case "type" -> value.setType(reader.readString());
+                case "coordinates" -> value.setCoordinates(readCoordinates(reader));
+                default -> reader.skipValue();
+            }
+        }
+        reader.readEndDocument();
+
+        return value;
+    }
+
+    private static List<Double> readCoordinates(BsonReader reader) {
+        List<Double> coordinates = new ArrayList<>(2);
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            coordinates.add(switch (reader.getCurrentBsonType()) {
+                case INT32 -> (double) reader.readInt32();
+                case INT64 -> (double) reader.readInt64();
+                default -> reader.readDouble();
+            });
+        }
+        reader.readEndArray();
+
+        return coordinates;
+    }
+}
@@ -0,0 +1,59 @@
+package oz.rest.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import oz.rest.models.Location;
+
+import static oz.rest.codecs.ModelCodec.writeString;
+
+public class LocationCodec implements Codec<Location> {
+    @Override
+    public Class<Location> getEncoderClass() {
+        return Location.class;
+    }
+
+    @Override
+    public void encode(BsonWriter writer, Location value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+        writeString(writer, "addressLine1", value.getAddressLine1());
+        writeString(writer, "addressLine2", value.getAddressLine2());
+        writeString(writer, "city", value.getCity());
+        writeString(writer, "state", value.getState());
+        writeString(writer, "zipCode", value.getZipCode());
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public Location decode(BsonReader reader, DecoderContext decoderContext) {
+        Location value = new Location();
+
+        reader.readStartDocument();
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                continue;
+            }
+
+            switch (name) {
+                case "addressLine1" -> value.setAddressLine1(reader.readString());
+                case "addressLine2" -> value.setAddressLine2(reader.readString());
+                case "city" -> value.setCity(reader.readString());
+                case "state" -> value.setState(reader.readString());
+                case "zipCode" -> value.setZipCode(reader.readString());
+                default -> reader.skipValue();
+            }
+        }
+
+        reader.readEndDocument();
+
+        return value;
+    }
+}
@@ -0,0 +1,154 @@
+package oz.rest.codecs;
+
+import java.time.Instant;
+import java.util.ArrayList;
+
+import org.bson.BsonObjectId;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.BsonWriter;
+import org.bson.codecs.CollectibleCodec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.types.ObjectId;
+
+import oz.rest.models.AbstractModel;
+
+/**
+ * Base for the hand-written model codecs. Takes care of the "_id", "version"
+ * and "lastModified" fields every model has, nulls and unknown fields, so each model only has to read and write its own fields
+ * by name. The stored layout is the same one the automatic pojo codec writes,
+ * so documents written by either can be read by the other.
+ */
+abstract class ModelCodec<T extends AbstractModel> implements CollectibleCodec<T> {
+    protected abstract T newInstance();
+
+    protected abstract void encodeFields(BsonWriter writer, T value, EncoderContext encoderContext);
+
+    /**
+     * Reads the current value into the field with the given name.
+     *
+     * @return false if the model has no such field, in which case the value is
+     *         skipped
+     */
+    protected abstract boolean decodeField(String name, BsonReader reader, T value, DecoderContext decoderContext);
+
+    @Override
+    public void encode(BsonWriter writer, T value, EncoderContext encoderContext) {
+        writer.writeStartDocument();
+
+        if (value.getId() != null) {
+            writer.writeObjectId("_id", value.getId());
+        }
+        if (value.getVersion() != null) {
+            writer.writeInt64("version", value.getVersion());
+        }
+        if (value.getLastModified() != null) {
+            writer.writeDateTime("lastModified", value.getLastModified().toEpochMilli());
+        }
+
+        encodeFields(writer, value, encoderContext);
+
+        writer.writeEndDocument();
+    }
+
+    @Override
+    public T decode(BsonReader reader, DecoderContext decoderContext) {
+        T value = newInstance();
+
+        reader.readStartDocument();
+
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            String name = reader.readName();
+
+            // the pojo codec leaves nulls unset, so do the same
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+            } else if (name.equals("_id")) {
+                value.setId(reader.readObjectId());
+            } else if (name.equals("version")) {
+                value.setVersion(readInt64(reader));
+            } else if (name.equals("lastModified")) {
+                value.setLastModified(Instant.ofEpochMilli(reader.readDateTime()));
+            } else if (!decodeField(name, reader, value, decoderContext)) {
+                reader.skipValue();
+            }
+        }
+
+        reader.readEndDocument();
+
+        return value;
+    }
+
+    @Override
+    public T generateIdIfAbsentFromDocument(T document) {
+        if (document.getId() == null) {
+            document.setId(new ObjectId());
+        }
+        return document;
+    }
+
+    @Override
+    public boolean documentHasId(T document) {
+        return document.getId() != null;
+    }
+
+    @Override
+    public BsonValue getDocumentId(T document) {
+        if (document.getId() == null) {
+            throw new IllegalStateException("The document does not contain an _id");
+        }
+        return new BsonObjectId(document.getId());
+    }
+
+    static void writeString(BsonWriter writer, String name, String value) {
+        if (value != null) {
+            writer.writeString(name, value);
+        }
+    }
+
+    static void writeInt32(BsonWriter writer, String name, Integer value) {
+        if (value != null) {
+            writer.writeInt32(name, value);
+        }
+    }
+
+    static void writeStrings(BsonWriter writer, String name, ArrayList<String> values) {
+        if (values == null) {
+            return;
+        }
+
+        writer.writeStartArray(name);
+        for (String value : values) {
+            if (value == null) {
+                writer.writeNull();
+            } else {
+                writer.writeString(value);
+            }
+        }
+        writer.writeEndArray();
+    }
+
+    // $inc and $add keep 32 bit numbers 32 bit, in case one ever got stored
+    static long readInt64(BsonReader reader) {
+        return reader.getCurrentBsonType() == BsonType.INT32 ? reader.readInt32() : reader.readInt64();
+    }
+
+    static ArrayList<String> readStrings(BsonReader reader) {
+        ArrayList<String> values = new ArrayList<>();
+
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+            if (reader.getCurrentBsonType() == BsonType.NULL) {
+                reader.readNull();
+                values.add(null);
+            } else {
+                values.add(reader.readString());
+            }
+        }
+        reader.readEndArray();
+
+        return values;
+    }
+}
@@ -0,0 +1,44 @@
+package oz.rest.codecs;
+
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistry;
+
+import oz.rest.models.Adopter;
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Location;
+import oz.rest.models.Pet;
+import oz.rest.models.Shelter;
+
+/**
+ * Hands out the hand-written codecs for the models, so they are decoded field by
+ * field instead of through the pojo codec's reflection. Anything not listed
+ * here is left to the next provider.
+ */
+public class ModelCodecProvider implements CodecProvider {
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+        if (clazz == Pet.class) {
+            return (Codec<T>) new PetCodec();
+        }
+
+        if (clazz == Shelter.class) {
+            return (Codec<T>) new ShelterCodec(registry.get(Location.class), registry.get(GeoPoint.class));
+        }
+
+        if (clazz == Adopter.class) {
+            return (Codec<T>) new AdopterCodec();
+        }
+
+        if (clazz == Location.class) {
+            return (Codec<T>) new LocationCodec();
+        }
+
+        if (clazz == GeoPoint.class) {
+            return (Codec<T>) new GeoPointCodec();
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,58 @@
+package oz.rest.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import oz.rest.models.Pet;
+
+public class PetCodec extends ModelCodec<Pet> {
+    @Override
+    public Class<Pet> getEncoderClass() {
+        return Pet.class;
+    }
+
+    @Override
+    protected Pet newInstance() {
+        return new Pet();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, Pet value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+        writeString(writer, "currentShelterId", value.getCurrentShelterId());
+        writeStrings(writer, "images", value.getImages());
+        writeString(writer, "type", value.getType());
+        writeString(writer, "breed", value.getBreed());
+        writeString(writer, "color", value.getColor());
+        writeString(writer, "health", value.getHealth());
+        writeInt32(writer, "age", value.getAge());
+        writeString(writer, "sex", value.getSex());
+        writeString(writer, "size", value.getSize());
+        writeString(writer, "temperament", value.getTemperament());
+        writeString(writer, "description", value.getDescription());
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, Pet value, DecoderContext decoderContext) {
+        switch (name) {
+            case "name" -> value.setName(reader.readString());
+            case "currentShelterId" -> value.setCurrentShelterId(reader.readString());
+            case "images" -> value.setImages(readStrings(reader));
+            case "type" -> value.setType(reader.readString());
+            case "breed" -> value.setBreed(reader.readString());
+            case "color" -> value.setColor(reader.readString());
+            case "health" -> value.setHealth(reader.readString());
+            case "age" -> value.setAge(reader.readInt32());
+            case "sex" -> value.setSex(reader.readString());
+            case "size" -> value.setSize(reader.readString());
+            case "temperament" -> value.setTemperament(reader.readString());
+            case "description" -> value.setDescription(reader.readString());
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,74 @@
+package oz.rest.codecs;
+
+import org.bson.BsonReader;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Location;
+import oz.rest.models.Shelter;
+
+public class ShelterCodec extends ModelCodec<Shelter> {
+    private final Codec<Location> locationCodec;
+    private final Codec<GeoPoint> geoPointCodec;
+
+    public ShelterCodec(Codec<Location> locationCodec, Codec<GeoPoint> geoPointCodec) {
+        this.locationCodec = locationCodec;
+        this.geoPointCodec = geoPointCodec;
+    }
+
+    @Override
+    public Class<Shelter> getEncoderClass() {
+        return Shelter.class;
+    }
+
+    @Override
+    protected Shelter newInstance() {
+        return new Shelter();
+    }
+
+    @Override
+    protected void encodeFields(BsonWriter writer, Shelter value, EncoderContext encoderContext) {
+        writeString(writer, "name", value.getName());
+        writeString(writer, "password", value.getPassword());
+        writeString(writer, "image", value.getImage());
+        writeString(writer, "description", value.getDescription());
+        writeString(writer, "emailAddress", value.getEmailAddress());
+        writeString(writer, "phoneNumber", value.getPhoneNumber());
+
+        if (value.getLocation() != null) {
+            writer.writeName("location");
+            encoderContext.encodeWithChildContext(locationCodec, writer, value.getLocation());
+        }
+
+        writeString(writer, "latitude", value.getLatitude());
+        writeString(writer, "longitude", value.getLongitude());
+
+        if (value.getPosition() != null) {
+            writer.writeName("position");
+            encoderContext.encodeWithChildContext(geoPointCodec, writer, value.getPosition());
+        }
+    }
+
+    @Override
+    protected boolean decodeField(String name, BsonReader reader, Shelter value, DecoderContext decoderContext) {
+        switch (name) {
+            case "name" -> value.setName(reader.readString());
+            case "password" -> value.setPassword(reader.readString());
+            case "image" -> value.setImage(reader.readString());
+            case "description" -> value.setDescription(reader.readString());
+            case "emailAddress" -> value.setEmailAddress(reader.readString());
+            case "phoneNumber" -> value.setPhoneNumber(reader.readString());
+            case "location" -> value.setLocation(decoderContext.decodeWithChildContext(locationCodec, reader));
+            case "latitude" -> value.setLatitude(reader.readString());
+            case "longitude" -> value.setLongitude(reader.readString());
+            case "position" -> value.setPosition(decoderContext.decodeWithChildContext(geoPointCodec, reader));
+            default -> {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,72 @@
+package oz.rest.geo;
+
+/**
+ * The smallest latitude and longitude box holding every point within a
+ * distance of a center, to throw out points with a couple of comparisons
+ * before working out their great circle distance. When it crosses the
+ * antimeridian west is greater than east, and when it reaches a pole it
+ * holds every longitude.
+ */
+public record BoundingBox(double south, double north, double west, double east, boolean allLongitudes) {
+    /**
+     * See http://janmatuschek.de/LatitudeLongitudeBoundingCoordinates, the
+     * widest point of a circle on a sphere isn't at the center's latitude.
+     */
+    public static BoundingBox around(double latitude, double longitude, double km) {
+        // a little extra so rounding never throws out a point right on the edge
+        double angle = km * (1 + 1e-9) / Haversine.EARTH_RADIUS_KM;
+        double south = latitude - Math.toDegrees(angle);
+        double north = latitude + Math.toDegrees(angle);
+
+        if (south <= -90 || north >= 90) {
+            return new BoundingBox(Math.max(south, -90), Math.min(north, 90), -180, 180, true);
+        }
+
+        double sin = Math.sin(angle) / Math.cos(Math.toRadians(latitude));
+        if (sin >= 1) {
+            return new BoundingBox(south, north, -180, 180, true);
+        }
+
+        double width = Math.toDegrees(Math.asin(sin));
+        return new BoundingBox(south, north, normalize(longitude - width), normalize(longitude + width), false);
+    }
+
+    static double normalize(double longitude) {
+        if (longitude < -180) {
+            return longitude + 360;
+        }
+        if (longitude > 180) {
+            return longitude - 360;
+        }
+        return longitude;
+    }
+
+    public boolean contains(double latitude, double longitude) {
+        return latitude >= south && latitude <= north && containsLongitude(longitude);
+    }
+
+    private boolean containsLongitude(double longitude) {
+        if (allLongitudes) {
+            return true;
+        }
+        return west <= east
+                ? longitude >= west && longitude <= east
+                : longitude >= west || longitude <= east;
+    }
+
+    /**
+     * Whether any of the box overlaps the given one, which mustn't cross the
+     * antimeridian itself.
+     */
+    public boolean intersects(double otherSouth, double otherNorth, double otherWest, double otherEast) {
+        if (otherNorth < south || otherSouth > north) {
+            return false;
+        }
+        if (allLongitudes) {
+            return true;
+        }
+        return west <= east
+                ? otherEast >= west && otherWest <= east
+                : otherEast >= west || otherWest <= east;
+    }
+}
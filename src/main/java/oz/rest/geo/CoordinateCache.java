@@ -0,0 +1,57 @@
+package oz.rest.geo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded least recently used map from zip codes (as numbers, see
+ * {@link ZipCentroids#parse}) to their coordinates, packed into one long
+ * rather than kept as a float[] per entry.
+ */
+public class CoordinateCache {
+    // no packed pair of floats is this, floatToIntBits only makes the canonical NaN
+    public static final long MISSING = -1L;
+
+    private final Map<Integer, Long> entries;
+
+    public CoordinateCache(int capacity) {
+        this.entries = new LinkedHashMap<>(Math.min(capacity, 1 << 16) * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static long pack(float latitude, float longitude) {
+        return (long) Float.floatToIntBits(latitude) << 32 | Float.floatToIntBits(longitude) & 0xFFFFFFFFL;
+    }
+
+    public static float latitude(long coordinates) {
+        return Float.intBitsToFloat((int) (coordinates >>> 32));
+    }
+
+    public static float longitude(long coordinates) {
+        return Float.intBitsToFloat((int) coordinates);
+    }
+
+    /**
+     * The packed coordinates of the zip code, or {@link #MISSING}.
+     */
+    public synchronized long get(int code) {
+        Long coordinates = entries.get(code);
+        return coordinates == null ? MISSING : coordinates;
+    }
+
+    public synchronized void put(int code, float latitude, float longitude) {
+        entries.put(code, pack(latitude, longitude));
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
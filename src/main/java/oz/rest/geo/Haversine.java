@@ -0,0 +1,101 @@
+package oz.rest.geo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Great circle distances in km. Besides the one pair at a time version there
+ * is a batch one, from one origin to points held as separate latitude and
+ * longitude arrays, which works out the origin's radians and cosine once
+ * rather than per point. The batch runs on a plain loop unless the
+ * geo.haversine.vector system property is true, HaversineVector was compiled
+ * in (the vector profile) and the jdk.incubator.vector module is there (see
+ * jvm.options), then it runs on the incubator Vector API. Nothing in the app
+ * calls the batch yet, ShelterGrid and the searches use distanceKm, it's there
+ * for ranking and analytics jobs over many points.
+ */
+public final class Haversine {
+    private static final Logger logger = LoggerFactory.getLogger(Haversine.class);
+
+    public static final double EARTH_RADIUS_KM = 6371;
+
+    interface Kernel {
+        void distancesKm(double latitude, double longitude, double[] latitudes, double[] longitudes, int from,
+                int to, double[] out, int offset);
+    }
+
+    static final Kernel SCALAR = Haversine::scalar;
+
+    private static final Kernel KERNEL = kernel();
+
+    private Haversine() {
+    }
+
+    // only loaded when asked for and the module is there, so the class can't
+    // fail to link without it
+    private static Kernel kernel() {
+        if (!Boolean.getBoolean("geo.haversine.vector")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        try {
+            return (Kernel) Class.forName("oz.rest.geo.HaversineVector").getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            logger.warn("geo.haversine.vector is set but this build has no vectorized haversine, "
+                    + "build with -Pvector, using the scalar one");
+            return SCALAR;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.warn("Could not load the vectorized haversine, using the scalar one", e);
+            return SCALAR;
+        }
+    }
+
+    public static boolean isVectorized() {
+        return KERNEL != SCALAR;
+    }
+
+    public static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double lat1 = Math.toRadians(latitude1);
+        double lat2 = Math.toRadians(latitude2);
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * The distances from the origin to every point.
+     */
+    public static double[] distancesKm(double latitude, double longitude, double[] latitudes, double[] longitudes) {
+        double[] out = new double[latitudes.length];
+        distancesKm(latitude, longitude, latitudes, longitudes, 0, latitudes.length, out);
+        return out;
+    }
+
+    /**
+     * The distances from the origin to the points from {@code from} to
+     * {@code to}, into {@code out} starting at 0.
+     */
+    public static void distancesKm(double latitude, double longitude, double[] latitudes, double[] longitudes,
+            int from, int to, double[] out) {
+        if (latitudes.length < to || longitudes.length < to || out.length < to - from) {
+            throw new IndexOutOfBoundsException("Not enough room for " + (to - from) + " points");
+        }
+        KERNEL.distancesKm(latitude, longitude, latitudes, longitudes, from, to, out, 0);
+    }
+
+    static void scalar(double latitude, double longitude, double[] latitudes, double[] longitudes, int from, int to,
+            double[] out, int offset) {
+        double lat1 = Math.toRadians(latitude);
+        double cosLat1 = Math.cos(lat1);
+        double lon1 = Math.toRadians(longitude);
+
+        for (int i = from; i < to; i++) {
+            double lat2 = Math.toRadians(latitudes[i]);
+            double sinLat = Math.sin((lat2 - lat1) / 2);
+            double sinLon = Math.sin((Math.toRadians(longitudes[i]) - lon1) / 2);
+            double a = sinLat * sinLat + cosLat1 * Math.cos(lat2) * sinLon * sinLon;
+            out[offset + i - from] = 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package oz.rest.geo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+
+/**
+ * Looks a zip code up with the Mapbox geocoding API. Only used for the zip
+ * codes the {@link ZipCentroids} table doesn't have.
+ */
+public final class MapboxGeocoder {
+    static final String URL = "https://api.mapbox.com/geocoding/v5/mapbox.places/";
+    static final int CONNECT_TIMEOUT_MS = 2000;
+    static final int READ_TIMEOUT_MS = 5000;
+
+    private MapboxGeocoder() {
+    }
+
+    /**
+     * The latitude and longitude of the zip code, or null if Mapbox doesn't
+     * know it either.
+     */
+    public static float[] coordinates(String zipCode, String accessToken) throws IOException {
+        URL url = new URL(URL
+                + URLEncoder.encode(zipCode.trim(), StandardCharsets.UTF_8)
+                + ".json?types=postcode&country=us&limit=1&access_token="
+                + URLEncoder.encode(accessToken, StandardCharsets.UTF_8));
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        conn.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        conn.setReadTimeout(READ_TIMEOUT_MS);
+
+        try (InputStream in = conn.getInputStream(); JsonReader reader = Json.createReader(in)) {
+            return center(reader.readObject());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    // the center of the first feature, which geojson puts longitude first
+    static float[] center(JsonObject response) {
+        JsonArray features = response.getJsonArray("features");
+        if (features == null || features.isEmpty()) {
+            return null;
+        }
+
+        JsonArray center = features.getJsonObject(0).getJsonArray("center");
+        if (center == null || center.size() < 2) {
+            return null;
+        }
+
+        return new float[] {
+                (float) center.getJsonNumber(1).doubleValue(),
+                (float) center.getJsonNumber(0).doubleValue()
+        };
+    }
+}
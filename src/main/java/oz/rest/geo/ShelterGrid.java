@@ -0,0 +1,241 @@
+package oz.rest.geo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+
+/**
+ * The shelters' positions bucketed into a grid of one degree cells, in
+ * parallel arrays sorted by cell so each cell's shelters are next to each
+ * other. Nearest shelter queries walk rings of cells outwards from the
+ * origin's cell, keeping the closest in a {@link TopK}, and stop once
+ * nothing further out can be closer than what they have.
+ *
+ * A grid is never changed, with() and without() make a new one. Shelters
+ * change rarely enough that copying the arrays is cheaper than keeping a
+ * mutable structure consistent for the readers.
+ */
+public final class ShelterGrid {
+    static final int CELL_DEGREES = 1;
+    static final int ROWS = 180 / CELL_DEGREES;
+    static final int COLUMNS = 360 / CELL_DEGREES;
+
+    public static final ShelterGrid EMPTY = of(new ObjectId[0], new double[0], new double[0]);
+
+    public record Neighbor(ObjectId id, double distanceKm) {
+    }
+
+    private final ObjectId[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    // the shelters of cell c are from cellStart[c] to cellStart[c + 1]
+    private final int[] cellStart;
+
+    private ShelterGrid(ObjectId[] ids, double[] latitudes, double[] longitudes, int[] cellStart) {
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cellStart = cellStart;
+    }
+
+    /**
+     * Builds a grid of the shelters in any order, the arrays aren't kept.
+     */
+    public static ShelterGrid of(ObjectId[] ids, double[] latitudes, double[] longitudes) {
+        int size = ids.length;
+
+        // counting sort by cell
+        int[] cells = new int[size];
+        int[] cellStart = new int[ROWS * COLUMNS + 1];
+        for (int i = 0; i < size; i++) {
+            cells[i] = cell(row(latitudes[i]), column(longitudes[i]));
+            cellStart[cells[i] + 1]++;
+        }
+        for (int c = 0; c < ROWS * COLUMNS; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+
+        ObjectId[] sortedIds = new ObjectId[size];
+        double[] sortedLatitudes = new double[size];
+        double[] sortedLongitudes = new double[size];
+        int[] next = Arrays.copyOf(cellStart, ROWS * COLUMNS);
+        for (int i = 0; i < size; i++) {
+            int slot = next[cells[i]]++;
+            sortedIds[slot] = ids[i];
+            sortedLatitudes[slot] = latitudes[i];
+            sortedLongitudes[slot] = longitudes[i];
+        }
+
+        return new ShelterGrid(sortedIds, sortedLatitudes, sortedLongitudes, cellStart);
+    }
+
+    /**
+     * A grid with the shelter added, or moved if it's already in there.
+     */
+    public ShelterGrid with(ObjectId id, double latitude, double longitude) {
+        int index = indexOf(id);
+        int size = index < 0 ? ids.length + 1 : ids.length;
+
+        ObjectId[] newIds = Arrays.copyOf(ids, size);
+        double[] newLatitudes = Arrays.copyOf(latitudes, size);
+        double[] newLongitudes = Arrays.copyOf(longitudes, size);
+        int slot = index < 0 ? size - 1 : index;
+        newIds[slot] = id;
+        newLatitudes[slot] = latitude;
+        newLongitudes[slot] = longitude;
+
+        return of(newIds, newLatitudes, newLongitudes);
+    }
+
+    public ShelterGrid without(ObjectId id) {
+        int index = indexOf(id);
+        if (index < 0) {
+            return this;
+        }
+
+        ObjectId[] newIds = new ObjectId[ids.length - 1];
+        double[] newLatitudes = new double[ids.length - 1];
+        double[] newLongitudes = new double[ids.length - 1];
+        for (int i = 0, j = 0; i < ids.length; i++) {
+            if (i != index) {
+                newIds[j] = ids[i];
+                newLatitudes[j] = latitudes[i];
+                newLongitudes[j] = longitudes[i];
+                j++;
+            }
+        }
+
+        return of(newIds, newLatitudes, newLongitudes);
+    }
+
+    private int indexOf(ObjectId id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Up to {@code limit} shelters at most {@code maxKm} from the origin,
+     * closest first.
+     */
+    public List<Neighbor> nearest(double latitude, double longitude, int limit, double maxKm) {
+        TopK top = new TopK(Math.min(limit, ids.length));
+        if (top.capacity() == 0) {
+            return List.of();
+        }
+
+        // cells and shelters outside the radius's box are skipped before any trig
+        BoundingBox box = maxKm == Double.POSITIVE_INFINITY ? null : BoundingBox.around(latitude, longitude, maxKm);
+
+        int row = row(latitude);
+        int column = column(longitude);
+
+        for (int ring = 0;; ring++) {
+            // once a ring has more cells than there are shelters, or would wrap
+            // around onto itself, looking at every shelter is cheaper
+            if (ring > 0 && (8 * ring > ids.length || 2 * ring + 1 >= COLUMNS)) {
+                top.clear();
+                offer(top, 0, ids.length, latitude, longitude, maxKm, box);
+                break;
+            }
+
+            visitRing(top, row, column, ring, latitude, longitude, maxKm, box);
+
+            double unseen = lowerBoundOutside(row, column, ring, latitude, longitude);
+            if (unseen > maxKm || top.isFull() && top.max() <= unseen) {
+                break;
+            }
+        }
+
+        top.sort();
+        List<Neighbor> nearest = new ArrayList<>(top.size());
+        for (int i = 0; i < top.size(); i++) {
+            nearest.add(new Neighbor(ids[top.slot(i)], top.distance(i)));
+        }
+        return nearest;
+    }
+
+    private void visitRing(TopK top, int row, int column, int ring, double latitude, double longitude,
+            double maxKm, BoundingBox box) {
+        for (int r = Math.max(row - ring, 0); r <= Math.min(row + ring, ROWS - 1); r++) {
+            boolean edge = r == row - ring || r == row + ring;
+            // the whole row on the top and bottom edges, only the two ends in between
+            int step = edge || ring == 0 ? 1 : 2 * ring;
+            for (int c = column - ring; c <= column + ring; c += step) {
+                int wrapped = Math.floorMod(c, COLUMNS);
+                if (box != null && !box.intersects(-90 + r * CELL_DEGREES, -90 + (r + 1) * CELL_DEGREES,
+                        -180 + wrapped * CELL_DEGREES, -180 + (wrapped + 1) * CELL_DEGREES)) {
+                    continue;
+                }
+                int cell = cell(r, wrapped);
+                offer(top, cellStart[cell], cellStart[cell + 1], latitude, longitude, maxKm, box);
+            }
+        }
+    }
+
+    private void offer(TopK top, int from, int to, double latitude, double longitude, double maxKm,
+            BoundingBox box) {
+        for (int i = from; i < to; i++) {
+            if (box != null && !box.contains(latitudes[i], longitudes[i])) {
+                continue;
+            }
+            double distance = Haversine.distanceKm(latitude, longitude, latitudes[i], longitudes[i]);
+            if (distance <= maxKm) {
+                top.offer(distance, i);
+            }
+        }
+    }
+
+    /**
+     * The least distance from the origin to anywhere outside the square of
+     * cells {@code ring} cells around the origin's. Anything outside is either
+     * north or south of it, at least the latitude gap away, or east or west
+     * within its rows, which is at least the longitude gap at the square's
+     * furthest latitude from the equator.
+     */
+    static double lowerBoundOutside(int row, int column, int ring, double latitude, double longitude) {
+        double south = -90 + (row - ring) * CELL_DEGREES;
+        double north = -90 + (row + ring + 1) * CELL_DEGREES;
+
+        double latitudeGap = Double.POSITIVE_INFINITY;
+        if (row - ring > 0) {
+            latitudeGap = latitude - south;
+        }
+        if (row + ring + 1 < ROWS) {
+            latitudeGap = Math.min(latitudeGap, north - latitude);
+        }
+        double bound = Math.toRadians(latitudeGap) * Haversine.EARTH_RADIUS_KM;
+
+        if (2 * ring + 1 < COLUMNS) {
+            double west = -180 + (column - ring) * CELL_DEGREES;
+            double east = -180 + (column + ring + 1) * CELL_DEGREES;
+            double longitudeGap = Math.min(longitude - west, east - longitude);
+            double furthest = Math.min(Math.max(Math.abs(south), Math.abs(north)), 90);
+            double h = Math.cos(Math.toRadians(furthest)) * Math.sin(Math.toRadians(longitudeGap) / 2);
+            bound = Math.min(bound, 2 * Haversine.EARTH_RADIUS_KM * Math.asin(Math.min(1, h)));
+        }
+
+        return bound;
+    }
+
+    static int row(double latitude) {
+        return Math.min(Math.max((int) Math.floor((latitude + 90) / CELL_DEGREES), 0), ROWS - 1);
+    }
+
+    static int column(double longitude) {
+        return Math.min(Math.max((int) Math.floor((longitude + 180) / CELL_DEGREES), 0), COLUMNS - 1);
+    }
+
+    static int cell(int row, int column) {
+        return row * COLUMNS + column;
+    }
+}
@@ -0,0 +1,202 @@
+package oz.rest.geo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Shelter;
+import oz.rest.services.ModelWrite;
+
+/**
+ * Keeps a {@link ShelterGrid} of every shelter's position in memory so the
+ * nearest shelters to a zip code are found without asking mongo. Turned on
+ * with {@code shelters.spatial-index.enabled}. Like the pet bitmap index it
+ * is built from a scan at startup and then follows the writes made through
+ * the services of this instance, so it is only correct when this is the only
+ * instance writing shelters. Until it is built nearest() returns null and the
+ * search runs a $geoNear like before.
+ */
+@ApplicationScoped
+public class ShelterIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ShelterIndex.class);
+
+    @Inject
+    @ConfigProperty(name = "shelters.spatial-index.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    MongoDatabase db;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    // null until the first build is done, readers don't lock since a grid is never changed
+    private volatile ShelterGrid grid;
+
+    // writes that happen while a rebuild is scanning, applied once it's done
+    private List<ModelWrite> missed;
+
+    // a rebuild was asked for while one was scanning
+    private boolean rebuildAgain;
+
+    void onStart(@Observes Startup startup) {
+        if (enabled) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Scans the positions of every shelter into a new grid and swaps it in.
+     */
+    public void rebuild() {
+        synchronized (this) {
+            if (missed != null) {
+                // already rebuilding, but it may have scanned past whatever this
+                // one is for (the startup migrations invalidate while the first
+                // scan runs), so it has to scan again once it's done
+                rebuildAgain = true;
+                return;
+            }
+            missed = new ArrayList<>();
+        }
+
+        boolean again;
+        do {
+            ShelterGrid rebuilt = scan();
+
+            synchronized (this) {
+                if (rebuilt != null) {
+                    for (ModelWrite write : missed) {
+                        rebuilt = apply(rebuilt, write);
+                    }
+                    grid = rebuilt;
+                }
+                again = rebuildAgain;
+                rebuildAgain = false;
+                missed = again ? new ArrayList<>() : null;
+            }
+        } while (again);
+    }
+
+    // null if it couldn't be read
+    private ShelterGrid scan() {
+        List<ObjectId> ids = new ArrayList<>();
+        List<double[]> positions = new ArrayList<>();
+
+        long started = System.nanoTime();
+        try (MongoCursor<RawBsonDocument> shelters = db.getCollection("Shelters", RawBsonDocument.class)
+                .find()
+                .projection(Projections.include("position"))
+                .iterator()) {
+            while (shelters.hasNext()) {
+                RawBsonDocument shelter = shelters.next();
+                double[] position = coordinates(shelter.get("position"));
+                if (position != null) {
+                    ids.add(shelter.getObjectId("_id").getValue());
+                    positions.add(position);
+                }
+            }
+        } catch (MongoException e) {
+            logger.error("Could not build the shelter spatial index, searches will use mongo", e);
+            return null;
+        }
+
+        double[] latitudes = new double[ids.size()];
+        double[] longitudes = new double[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            longitudes[i] = positions.get(i)[0];
+            latitudes[i] = positions.get(i)[1];
+        }
+        ShelterGrid scanned = ShelterGrid.of(ids.toArray(new ObjectId[0]), latitudes, longitudes);
+
+        logger.info("Built the shelter spatial index of {} shelters in {} ms", scanned.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        return scanned;
+    }
+
+    // longitude and latitude of a stored GeoJSON point, null if it isn't one
+    static double[] coordinates(BsonValue position) {
+        if (position == null || !position.isDocument()) {
+            return null;
+        }
+        BsonValue coordinates = ((BsonDocument) position).get("coordinates");
+        if (coordinates == null || !coordinates.isArray()) {
+            return null;
+        }
+        BsonArray array = coordinates.asArray();
+        if (array.size() < 2 || !array.get(0).isNumber() || !array.get(1).isNumber()) {
+            return null;
+        }
+        return new double[] { array.get(0).asNumber().doubleValue(), array.get(1).asNumber().doubleValue() };
+    }
+
+    void onWrite(@Observes ModelWrite write) {
+        if (!enabled || !write.isFor(Shelter.class)) {
+            return;
+        }
+
+        if (write.kind() == ModelWrite.Kind.INVALIDATE) {
+            executor.execute(this::rebuild);
+            return;
+        }
+
+        synchronized (this) {
+            if (missed != null) {
+                missed.add(write);
+            }
+            if (grid != null) {
+                grid = apply(grid, write);
+            }
+        }
+    }
+
+    private static ShelterGrid apply(ShelterGrid grid, ModelWrite write) {
+        return switch (write.kind()) {
+            case INSERT, UPDATE -> {
+                GeoPoint position = ((Shelter) write.model()).getPosition();
+                yield position == null
+                        ? grid.without(write.id())
+                        : grid.with(write.id(), position.latitude(), position.longitude());
+            }
+            case DELETE -> grid.without(write.id());
+            default -> grid;
+        };
+    }
+
+    /**
+     * Up to {@code limit} shelters at most {@code maxKm} away, closest first,
+     * or null if the index isn't there to answer.
+     */
+    public List<ShelterGrid.Neighbor> nearest(double latitude, double longitude, int limit, double maxKm) {
+        ShelterGrid current = grid;
+        if (!enabled || current == null) {
+            return null;
+        }
+        return current.nearest(latitude, longitude, limit, maxKm);
+    }
+
+    public int size() {
+        ShelterGrid current = grid;
+        return current == null ? 0 : current.size();
+    }
+}
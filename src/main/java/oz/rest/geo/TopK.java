@@ -0,0 +1,113 @@
+package oz.rest.geo;
+
+/**
+ * The {@code capacity} smallest distances offered, with the slot of what each
+ * one is the distance to. Kept as a max heap in two primitive arrays, so an
+ * offer that doesn't make it is one comparison with the root, and picking k
+ * out of n costs O(n log k) instead of sorting all n.
+ */
+public final class TopK {
+    private final double[] distances;
+    private final int[] slots;
+    private int size;
+    private boolean sorted;
+
+    public TopK(int capacity) {
+        this.distances = new double[capacity];
+        this.slots = new int[capacity];
+    }
+
+    public int capacity() {
+        return distances.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == distances.length;
+    }
+
+    /**
+     * The largest distance kept, the one a closer offer replaces.
+     */
+    public double max() {
+        return distances[0];
+    }
+
+    public void clear() {
+        size = 0;
+        sorted = false;
+    }
+
+    public void offer(double distance, int slot) {
+        if (sorted) {
+            throw new IllegalStateException("Already sorted, clear() first");
+        }
+        if (size < distances.length) {
+            int i = size++;
+            // sift up
+            while (i > 0 && distances[(i - 1) / 2] < distance) {
+                distances[i] = distances[(i - 1) / 2];
+                slots[i] = slots[(i - 1) / 2];
+                i = (i - 1) / 2;
+            }
+            distances[i] = distance;
+            slots[i] = slot;
+        } else if (size > 0 && distance < distances[0]) {
+            siftDown(distance, slot, size);
+        }
+    }
+
+    // puts the entry at the root and moves it down to where it belongs
+    private void siftDown(double distance, int slot, int size) {
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && distances[child + 1] > distances[child]) {
+                child++;
+            }
+            if (distances[child] <= distance) {
+                break;
+            }
+            distances[i] = distances[child];
+            slots[i] = slots[child];
+            i = child;
+        }
+        distances[i] = distance;
+        slots[i] = slot;
+    }
+
+    /**
+     * Heap sorts the entries in place, closest first. After this distance(i)
+     * and slot(i) read them in order, and nothing more can be offered until
+     * clear().
+     */
+    public void sort() {
+        for (int end = size - 1; end > 0; end--) {
+            double distance = distances[end];
+            int slot = slots[end];
+            distances[end] = distances[0];
+            slots[end] = slots[0];
+            siftDown(distance, slot, end);
+        }
+        sorted = true;
+    }
+
+    public double distance(int i) {
+        checkSorted();
+        return distances[i];
+    }
+
+    public int slot(int i) {
+        checkSorted();
+        return slots[i];
+    }
+
+    private void checkSorted() {
+        if (!sorted) {
+            throw new IllegalStateException("sort() first");
+        }
+    }
+}
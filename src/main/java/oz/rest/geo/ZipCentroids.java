@@ -0,0 +1,179 @@
+package oz.rest.geo;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A table of zip code centroids read from a compact binary file, see
+ * {@link ZipCentroidsConverter} to make one. The file is, big endian:
+ *
+ * <pre>
+ * int     magic "ZIPC"
+ * int     format version, 1
+ * int     count
+ * int[]   the zip codes as numbers, ascending
+ * float[] their latitudes
+ * float[] their longitudes
+ * </pre>
+ *
+ * The zip codes are copied into an int[] to binary search, the coordinates
+ * stay in the mapped file and are only read for the code that's found. That
+ * is about 12 bytes per zip code, so under 500 KB for the whole US.
+ */
+public final class ZipCentroids {
+    static final int MAGIC = 0x5A495043;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 12;
+
+    public static final ZipCentroids EMPTY = new ZipCentroids(new int[0], FloatBuffer.allocate(0),
+            FloatBuffer.allocate(0));
+
+    private final int[] codes;
+    private final FloatBuffer latitudes;
+    private final FloatBuffer longitudes;
+
+    private ZipCentroids(int[] codes, FloatBuffer latitudes, FloatBuffer longitudes) {
+        this.codes = codes;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+    }
+
+    public static ZipCentroids map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping stays valid after the channel is closed
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static ZipCentroids read(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a zip code centroid table");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unknown zip code centroid table version " + buffer.getInt(4));
+        }
+
+        int count = buffer.getInt(8);
+        if (count < 0 || buffer.limit() != HEADER_BYTES + 12L * count) {
+            throw new IOException("Truncated zip code centroid table");
+        }
+
+        int[] codes = new int[count];
+        buffer.position(HEADER_BYTES).asIntBuffer().get(codes);
+        for (int i = 1; i < count; i++) {
+            if (codes[i - 1] >= codes[i]) {
+                throw new IOException("Zip code centroid table isn't sorted");
+            }
+        }
+
+        FloatBuffer latitudes = buffer.position(HEADER_BYTES + 4 * count).slice().asFloatBuffer();
+        FloatBuffer longitudes = buffer.position(HEADER_BYTES + 8 * count).slice().asFloatBuffer();
+
+        return new ZipCentroids(codes, latitudes, longitudes);
+    }
+
+    /**
+     * Writes a table, the entries don't have to be sorted yet.
+     */
+    public static void write(Path file, int[] codes, float[] latitudes, float[] longitudes) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            write(out, codes, latitudes, longitudes);
+        }
+    }
+
+    static void write(OutputStream stream, int[] codes, float[] latitudes, float[] longitudes) throws IOException {
+        int count = codes.length;
+        if (latitudes.length != count || longitudes.length != count) {
+            throw new IllegalArgumentException("Every zip code needs a latitude and a longitude");
+        }
+
+        // sort the positions by zip code so the coordinates follow them
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = (long) codes[i] << 32 | i;
+        }
+        Arrays.sort(order);
+        for (int i = 1; i < count; i++) {
+            if (order[i - 1] >>> 32 == order[i] >>> 32) {
+                throw new IllegalArgumentException("Zip code " + (order[i] >>> 32) + " is in there twice");
+            }
+        }
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(count);
+        for (long entry : order) {
+            out.writeInt((int) (entry >>> 32));
+        }
+        for (long entry : order) {
+            out.writeFloat(latitudes[(int) entry]);
+        }
+        for (long entry : order) {
+            out.writeFloat(longitudes[(int) entry]);
+        }
+        out.flush();
+    }
+
+    /**
+     * The zip code as a number, or -1 if it isn't one. ZIP+4 codes are cut
+     * down to their first 5 digits.
+     */
+    public static int parse(String zipCode) {
+        if (zipCode == null) {
+            return -1;
+        }
+
+        String digits = zipCode.trim();
+        if (digits.length() == 10 && digits.charAt(5) == '-') {
+            digits = digits.substring(0, 5);
+        }
+        if (digits.length() != 5) {
+            return -1;
+        }
+
+        int code = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            char c = digits.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            code = code * 10 + (c - '0');
+        }
+        return code;
+    }
+
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Where the zip code is in the table, or -1 if it isn't.
+     */
+    public int indexOf(String zipCode) {
+        int code = parse(zipCode);
+        if (code < 0) {
+            return -1;
+        }
+
+        int index = Arrays.binarySearch(codes, code);
+        return index < 0 ? -1 : index;
+    }
+
+    public float latitude(int index) {
+        return latitudes.get(index);
+    }
+
+    public float longitude(int index) {
+        return longitudes.get(index);
+    }
+}
@@ -0,0 +1,99 @@
+package oz.rest.geo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Turns a csv (or tab separated) file of zip code centroids into the binary
+ * table {@link ZipCentroids} reads. The columns are found by their header, so
+ * both a plain zip,latitude,longitude file and the Census Gazetteer ZCTA file
+ * (GEOID, INTPTLAT, INTPTLONG) work as they are.
+ *
+ * <pre>
+ * java -cp target/classes oz.rest.geo.ZipCentroidsConverter 2023_Gaz_zcta_national.txt zip-centroids.bin
+ * </pre>
+ */
+public class ZipCentroidsConverter {
+    static final List<String> ZIP_COLUMNS = List.of("zip", "zipcode", "zip_code", "zcta5", "geoid");
+    static final List<String> LATITUDE_COLUMNS = List.of("lat", "latitude", "intptlat");
+    static final List<String> LONGITUDE_COLUMNS = List.of("lon", "lng", "long", "longitude", "intptlong");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ZipCentroidsConverter <centroids.csv> <zip-centroids.bin>");
+            System.exit(1);
+        }
+
+        int count = convert(Path.of(args[0]), Path.of(args[1]));
+        System.out.println("Wrote " + count + " zip codes to " + args[1]);
+    }
+
+    static int convert(Path input, Path output) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IOException(input + " is empty");
+            }
+
+            Pattern separator = Pattern.compile(header.indexOf('\t') >= 0 ? "\t" : ",");
+            String[] columns = separator.split(header);
+            int zip = column(columns, ZIP_COLUMNS);
+            int latitude = column(columns, LATITUDE_COLUMNS);
+            int longitude = column(columns, LONGITUDE_COLUMNS);
+
+            int[] codes = new int[1024];
+            float[] latitudes = new float[1024];
+            float[] longitudes = new float[1024];
+            int count = 0;
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                String[] fields = separator.split(line);
+                int code = ZipCentroids.parse(unquote(fields[zip]));
+                if (code < 0) {
+                    throw new IOException("Not a zip code: " + line);
+                }
+
+                if (count == codes.length) {
+                    codes = Arrays.copyOf(codes, count * 2);
+                    latitudes = Arrays.copyOf(latitudes, count * 2);
+                    longitudes = Arrays.copyOf(longitudes, count * 2);
+                }
+                codes[count] = code;
+                latitudes[count] = Float.parseFloat(unquote(fields[latitude]));
+                longitudes[count] = Float.parseFloat(unquote(fields[longitude]));
+                count++;
+            }
+
+            ZipCentroids.write(output, Arrays.copyOf(codes, count), Arrays.copyOf(latitudes, count),
+                    Arrays.copyOf(longitudes, count));
+            return count;
+        }
+    }
+
+    static int column(String[] columns, List<String> names) throws IOException {
+        for (int i = 0; i < columns.length; i++) {
+            if (names.contains(unquote(columns[i]).toLowerCase())) {
+                return i;
+            }
+        }
+        throw new IOException("No column named any of " + names);
+    }
+
+    static String unquote(String field) {
+        field = field.trim();
+        if (field.length() >= 2 && field.startsWith("\"") && field.endsWith("\"")) {
+            field = field.substring(1, field.length() - 1).trim();
+        }
+        return field;
+    }
+}
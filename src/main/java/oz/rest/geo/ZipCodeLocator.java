@@ -0,0 +1,275 @@
+package oz.rest.geo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bson.Document;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import oz.rest.monitoring.LatencyHistogram;
+
+/**
+ * Finds where zip codes are. A {@link ZipCentroids} table is loaded at startup
+ * and answers without leaving the process: the one the build makes from the
+ * Census ZCTA Gazetteer and bundles with the application, or the one at
+ * {@code geo.zip-centroids.path} if that's set. Mapbox is only asked about
+ * the codes it doesn't have, and only when {@code geo.mapbox.token} (or
+ * GEO_MAPBOX_TOKEN) is set.
+ *
+ * What Mapbox answers is cached twice: in a {@link CoordinateCache} of
+ * {@code geo.cache.size} entries, and in the GeoCache collection, which
+ * outlives restarts and expires entries after {@code geo.cache.ttl-days}.
+ */
+@ApplicationScoped
+public class ZipCodeLocator {
+    private static final Logger logger = LoggerFactory.getLogger(ZipCodeLocator.class);
+
+    static final String CACHED_AT = "cachedAt";
+
+    // made by the build, see the zip-centroids execution in pom.xml
+    static final String BUNDLED_CENTROIDS = "/oz/rest/geo/zip-centroids.bin";
+
+    @Inject
+    @ConfigProperty(name = "geo.zip-centroids.path")
+    Optional<String> centroidsPath;
+
+    @Inject
+    @ConfigProperty(name = "geo.mapbox.token")
+    Optional<String> mapboxToken;
+
+    @Inject
+    @ConfigProperty(name = "geo.cache.ttl-days", defaultValue = "90")
+    long cacheTtlDays;
+
+    @Inject
+    MongoDatabase db;
+
+    private volatile ZipCentroids centroids = ZipCentroids.EMPTY;
+
+    private final CoordinateCache cache;
+
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder storeHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LatencyHistogram storeLatency = new LatencyHistogram();
+    private final LatencyHistogram remoteLatency = new LatencyHistogram();
+
+    public ZipCodeLocator() {
+        this(10_000);
+    }
+
+    @Inject
+    public ZipCodeLocator(@ConfigProperty(name = "geo.cache.size", defaultValue = "10000") int cacheSize) {
+        this.cache = new CoordinateCache(cacheSize);
+    }
+
+    void onStart(@Observes Startup startup) {
+        if (centroidsPath != null && centroidsPath.isPresent()) {
+            load(Path.of(centroidsPath.get()));
+        } else {
+            loadBundled();
+        }
+
+        try {
+            store().createIndex(Indexes.ascending(CACHED_AT),
+                    new IndexOptions().expireAfter(cacheTtlDays, TimeUnit.DAYS).background(true));
+        } catch (MongoException e) {
+            logger.error("Could not create the GeoCache ttl index", e);
+        }
+    }
+
+    public void load(Path file) {
+        try {
+            centroids = ZipCentroids.map(file);
+            logger.info("Mapped {} zip code centroids from {}", centroids.size(), file);
+        } catch (IOException e) {
+            logger.error("Could not map the zip code centroids from " + file, e);
+        }
+    }
+
+    void loadBundled() {
+        URL bundled = ZipCodeLocator.class.getResource(BUNDLED_CENTROIDS);
+        if (bundled == null) {
+            logger.warn("There's no bundled zip code table (build with -Pzcta) and geo.zip-centroids.path "
+                    + "isn't set, every zip code will be looked up remotely");
+            return;
+        }
+
+        try {
+            // an exploded app can map it like any other file, inside a war it's read
+            // into memory, a few hundred KB
+            if ("file".equals(bundled.getProtocol())) {
+                load(Path.of(bundled.toURI()));
+                return;
+            }
+
+            try (InputStream in = bundled.openStream()) {
+                byte[] bytes = in.readAllBytes();
+                centroids = ZipCentroids.read(ByteBuffer.allocateDirect(bytes.length).put(bytes).flip());
+            }
+            logger.info("Loaded {} bundled zip code centroids", centroids.size());
+        } catch (IOException | URISyntaxException e) {
+            logger.error("Could not load the bundled zip code centroids", e);
+        }
+    }
+
+    public void setCentroids(ZipCentroids centroids) {
+        this.centroids = centroids;
+    }
+
+    protected MongoCollection<Document> store() {
+        return db.getCollection("GeoCache");
+    }
+
+    /**
+     * The latitude and longitude of the zip code, or null if it can't be
+     * found.
+     */
+    public float[] coordinates(String zipCode) throws IOException {
+        int code = ZipCentroids.parse(zipCode);
+        if (code < 0) {
+            misses.increment();
+            return null;
+        }
+
+        ZipCentroids table = centroids;
+        int index = table.indexOf(zipCode);
+        if (index >= 0) {
+            tableHits.increment();
+            return new float[] { table.latitude(index), table.longitude(index) };
+        }
+
+        long cached = cache.get(code);
+        if (cached != CoordinateCache.MISSING) {
+            cacheHits.increment();
+            return new float[] { CoordinateCache.latitude(cached), CoordinateCache.longitude(cached) };
+        }
+
+        // the tests don't inject a database
+        if (db != null) {
+            float[] stored = lookupStore(code);
+            if (stored != null) {
+                storeHits.increment();
+                cache.put(code, stored[0], stored[1]);
+                return stored;
+            }
+        }
+
+        String token = mapboxToken == null ? null : mapboxToken.orElse(null);
+        if (token == null || token.isBlank()) {
+            misses.increment();
+            return null;
+        }
+
+        long start = System.nanoTime();
+        float[] coordinates = MapboxGeocoder.coordinates(zipCode, token);
+        remoteLatency.record(System.nanoTime() - start);
+
+        if (coordinates == null) {
+            misses.increment();
+            return null;
+        }
+
+        cache.put(code, coordinates[0], coordinates[1]);
+        if (db != null) {
+            save(code, coordinates);
+        }
+        return coordinates;
+    }
+
+    static String key(int code) {
+        return String.format("%05d", code);
+    }
+
+    private float[] lookupStore(int code) {
+        long start = System.nanoTime();
+        try {
+            Document entry = store().find(Filters.eq("_id", key(code))).first();
+            if (entry == null) {
+                return null;
+            }
+            return new float[] {
+                    entry.get("latitude", Number.class).floatValue(),
+                    entry.get("longitude", Number.class).floatValue()
+            };
+        } catch (MongoException e) {
+            // the cache is only worth it if it's faster than asking mapbox
+            logger.warn("Could not read the GeoCache", e);
+            return null;
+        } finally {
+            storeLatency.record(System.nanoTime() - start);
+        }
+    }
+
+    private void save(int code, float[] coordinates) {
+        try {
+            store().replaceOne(Filters.eq("_id", key(code)),
+                    new Document("_id", key(code))
+                            .append("latitude", (double) coordinates[0])
+                            .append("longitude", (double) coordinates[1])
+                            .append(CACHED_AT, new Date()),
+                    new ReplaceOptions().upsert(true));
+        } catch (MongoException e) {
+            logger.warn("Could not write to the GeoCache", e);
+        }
+    }
+
+    public void clearCache() {
+        cache.clear();
+    }
+
+    public int getCentroidCount() {
+        return centroids.size();
+    }
+
+    public int getCacheSize() {
+        return cache.size();
+    }
+
+    public long getTableHits() {
+        return tableHits.sum();
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getStoreHits() {
+        return storeHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public LatencyHistogram getStoreLatency() {
+        return storeLatency;
+    }
+
+    public LatencyHistogram getRemoteLatency() {
+        return remoteLatency;
+    }
+}
@@ -1,24 +1,32 @@
 package oz.rest.models;
 
-import org.bson.Document;
+import java.time.Instant;
+
 import org.bson.codecs.pojo.annotations.BsonId;
 import org.bson.codecs.pojo.annotations.BsonProperty;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.media.Schema;
 
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
 import jakarta.persistence.Id;
 
+// lets a conditional retrieve check the version without reading the document,
+// see AbstractService.notModified
+@CompoundIndex(keys = { "_id", "version", "lastModified" })
 public class AbstractModel {
-    final private Jsonb jsonb = JsonbBuilder.create();
-
     @Id
     @BsonProperty("_id")
     @BsonId
     @Schema(readOnly = true)
     private ObjectId id;
 
+    // both are set by the services on every write, whatever the client sends.
+    // documents from before they existed have neither
+    @Schema(readOnly = true)
+    private Long version;
+
+    @Schema(readOnly = true)
+    private Instant lastModified;
+
     public ObjectId getId() {
         return id;
     }
@@ -27,12 +35,26 @@ public class AbstractModel {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
     public String toJson() {
-        // convert to json, but replace the "id" field with a string representation for
+        // the shared serializer for this model writes the "id" field as a string for
         // easier frontend use
-        var doc = Document.parse(jsonb.toJson(this));
-        doc.replace("id", id.toString());
-        return doc.toJson();
+        return ModelJson.of(this).toJson(this);
     }
 
 }
@@ -4,6 +4,7 @@ import org.bson.codecs.pojo.annotations.BsonProperty;
 
 import jakarta.validation.constraints.Email;
 
+@CompoundIndex(keys = { "email_address" }, unique = true)
 public class Adopter extends AbstractModel {
     // @JsonbCreator
     // public Adopter(@JsonbProperty("name") String name,
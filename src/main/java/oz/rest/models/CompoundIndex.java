@@ -0,0 +1,25 @@
+package oz.rest.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Repeatable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares an index on the collection a model is stored in, created at startup
+ * by {@link oz.rest.IndexBootstrap}. Keys use the stored field names and are
+ * ascending, unless prefixed with "-" for descending.
+ *
+ * <pre>
+ * &#64;CompoundIndex(keys = { "type", "sex", "size", "age" })
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@Repeatable(CompoundIndexes.class)
+public @interface CompoundIndex {
+    String[] keys();
+
+    boolean unique() default false;
+}
@@ -0,0 +1,21 @@
+package oz.rest.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares a 2dsphere index on a field holding a {@link GeoPoint}, created at
+ * startup by {@link oz.rest.IndexBootstrap}. Documents without the field are
+ * left out of the index.
+ *
+ * <pre>
+ * &#64;GeoIndex("position")
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface GeoIndex {
+    String value();
+}
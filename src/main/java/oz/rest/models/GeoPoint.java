@@ -0,0 +1,70 @@
+package oz.rest.models;
+
+import java.util.List;
+
+/**
+ * A GeoJSON point, {"type": "Point", "coordinates": [longitude, latitude]},
+ * the shape mongo's 2dsphere indexes and $geoNear work on.
+ */
+public class GeoPoint {
+    private String type = "Point";
+
+    // longitude first, like GeoJSON. a list rather than an array so the pojo
+    // codec can store it too
+    private List<Double> coordinates;
+
+    public GeoPoint() {
+    }
+
+    public GeoPoint(double longitude, double latitude) {
+        this.coordinates = List.of(longitude, latitude);
+    }
+
+    /**
+     * The point at the given latitude and longitude, or null if either is missing,
+     * not a number or out of range.
+     */
+    public static GeoPoint of(String latitude, String longitude) {
+        if (latitude == null || longitude == null) {
+            return null;
+        }
+
+        double lat;
+        double lon;
+        try {
+            lat = Double.parseDouble(latitude.trim());
+            lon = Double.parseDouble(longitude.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (!(lat >= -90 && lat <= 90 && lon >= -180 && lon <= 180)) {
+            return null;
+        }
+        return new GeoPoint(lon, lat);
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public List<Double> getCoordinates() {
+        return coordinates;
+    }
+
+    public void setCoordinates(List<Double> coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    public double longitude() {
+        return coordinates.get(0);
+    }
+
+    public double latitude() {
+        return coordinates.get(1);
+    }
+}
@@ -0,0 +1,80 @@
+package oz.rest.models;
+
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jakarta.json.bind.Jsonb;
+import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.bind.JsonbConfig;
+
+/**
+ * Json serializer for one model class. Every serializer shares a single
+ * thread-safe {@link Jsonb} engine, which caches the property mapping of each
+ * class the first time it sees it, so each serializer serializes a blank
+ * instance when it is built to get that out of the way before the first
+ * request. The ids are written as hex strings by {@link ObjectIdAdapter}.
+ */
+public final class ModelJson<T extends AbstractModel> {
+    private static final Jsonb jsonb = JsonbBuilder.create(new JsonbConfig().withAdapters(new ObjectIdAdapter()));
+
+    private static final Map<Class<?>, ModelJson<?>> serializers = new ConcurrentHashMap<>();
+
+    static {
+        // build the ones we know about up front, anything else is built on first use
+        of(Pet.class);
+        of(Shelter.class);
+        of(Adopter.class);
+        of(ZipCode.class);
+    }
+
+    private final Class<T> type;
+
+    private ModelJson(Class<T> type) {
+        this.type = type;
+
+        try {
+            jsonb.toJson(type.getDeclaredConstructor().newInstance(), type);
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException
+                | NoSuchMethodException e) {
+            // models always have a default constructor, but if one doesn't it just
+            // gets mapped on first use instead
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractModel> ModelJson<T> of(Class<T> type) {
+        return (ModelJson<T>) serializers.computeIfAbsent(type, t -> new ModelJson<>(type));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends AbstractModel> ModelJson<T> of(T model) {
+        return of((Class<T>) model.getClass());
+    }
+
+    public String toJson(T model) {
+        return jsonb.toJson(model, type);
+    }
+
+    public void toJson(T model, Writer writer) {
+        jsonb.toJson(model, type, writer);
+    }
+
+    /**
+     * Binds any json value with the same engine and adapters the models use.
+     *
+     * @throws jakarta.json.bind.JsonbException if the json isn't of that type
+     */
+    public static Object fromJson(String json, Type type) {
+        return jsonb.fromJson(json, type);
+    }
+
+    /**
+     * @throws jakarta.json.bind.JsonbException if the json isn't a T
+     */
+    public T fromJson(String json) {
+        return jsonb.fromJson(json, type);
+    }
+}
@@ -0,0 +1,19 @@
+package oz.rest.models;
+
+import org.bson.types.ObjectId;
+
+import jakarta.json.bind.adapter.JsonbAdapter;
+
+// writes ObjectIds as their hex string so the frontend gets "id": "65f..." directly,
+// instead of the timestamp/date bean json-b would otherwise produce
+public class ObjectIdAdapter implements JsonbAdapter<ObjectId, String> {
+    @Override
+    public String adaptToJson(ObjectId obj) {
+        return obj.toHexString();
+    }
+
+    @Override
+    public ObjectId adaptFromJson(String obj) {
+        return new ObjectId(obj);
+    }
+}
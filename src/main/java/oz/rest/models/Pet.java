@@ -15,6 +15,21 @@ import org.bson.codecs.configuration.CodecRegistry;
 import org.bson.codecs.pojo.PojoCodecProvider;
 import static org.bson.codecs.configuration.CodecRegistries.*;
 
+// one index per common search shape, equality fields first and the age range
+// last; see PetIndexExplainTest for the shapes they have to cover
+@CompoundIndex(keys = { "currentShelterId", "type", "age" })
+@CompoundIndex(keys = { "type", "sex", "size", "age" })
+@CompoundIndex(keys = { "breed", "age" })
+@CompoundIndex(keys = { "sex", "size", "age" })
+@CompoundIndex(keys = { "color" })
+@CompoundIndex(keys = { "health" })
+// with _id after, so they give the keyset paging order of PageToken.sort too
+@CompoundIndex(keys = { "age", "_id" })
+@CompoundIndex(keys = { "name", "_id" })
+// a shelter's roster in _id order, see ShelterService.roster
+@CompoundIndex(keys = { "currentShelterId", "_id" })
+// backs the free text search, a word in the name counts the most
+@TextIndex(fields = { "name", "breed", "temperament", "description" }, weights = { 10, 5, 3, 1 })
 public class Pet extends AbstractModel {
     // @JsonbCreator
     // @BsonCreator
@@ -6,6 +6,9 @@ import jakarta.validation.constraints.Email;
 // import org.bson.codecs.pojo.annotations.BsonProperty;
 import jakarta.validation.constraints.NotEmpty;
 
+@CompoundIndex(keys = { "emailAddress" }, unique = true)
+// nearest shelters to a zip code, see ZipCodeService
+@GeoIndex("position")
 public class Shelter extends AbstractModel {
     // SRS says name as primary key, but should probably be email
     @NotEmpty(message = "Shelter name must not be empty")
@@ -42,6 +45,11 @@ public class Shelter extends AbstractModel {
     private String latitude;
     private String longitude;
 
+    // set from the latitude and longitude whenever they're written, so mongo can
+    // search by distance
+    @Schema(readOnly = true)
+    private GeoPoint position;
+
     // public String getUsername() {
     // return username;
     // }
@@ -82,6 +90,14 @@ public class Shelter extends AbstractModel {
         this.longitude = longitude;
     }
 
+    public GeoPoint getPosition() {
+        return position;
+    }
+
+    public void setPosition(GeoPoint position) {
+        this.position = position;
+    }
+
     public String getName() {
         return name;
     }
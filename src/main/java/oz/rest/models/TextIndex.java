@@ -0,0 +1,25 @@
+package oz.rest.models;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares the text index of the collection a model is stored in, created at
+ * startup by {@link oz.rest.IndexBootstrap} next to its {@link CompoundIndex}es.
+ * Mongo allows one text index per collection. Each field's weight is how much a
+ * match in it counts towards the relevance score, relative to the others.
+ *
+ * <pre>
+ * &#64;TextIndex(fields = { "name", "description" }, weights = { 5, 1 })
+ * </pre>
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface TextIndex {
+    String[] fields();
+
+    // one per field, all 1 if left out
+    int[] weights() default {};
+}
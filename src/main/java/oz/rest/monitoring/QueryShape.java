@@ -0,0 +1,154 @@
+package oz.rest.monitoring;
+
+import java.util.Set;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+/**
+ * Normalizes a command into its shape, the collection and the structure of its
+ * filter, sort and paging with every value replaced by "?", so that all the
+ * pet searches filtering on the same fields are counted together no matter
+ * what they searched for.
+ */
+public final class QueryShape {
+    private static final BsonString VALUE = new BsonString("?");
+
+    // what gets recorded, the rest (hello, getMore, explain, ...) is noise here
+    private static final Set<String> COMMANDS = Set.of("find", "aggregate", "count", "distinct", "findAndModify",
+            "update", "delete", "insert");
+
+    // the commands explain can be run on as they are
+    private static final Set<String> EXPLAINABLE = Set.of("find", "aggregate", "count", "distinct");
+
+    private QueryShape() {
+    }
+
+    public static boolean isRecorded(String commandName) {
+        return COMMANDS.contains(commandName);
+    }
+
+    public static boolean isExplainable(String commandName) {
+        return EXPLAINABLE.contains(commandName);
+    }
+
+    public static String of(String commandName, BsonDocument command) {
+        StringBuilder shape = new StringBuilder(commandName);
+
+        BsonValue collection = command.get(commandName);
+        if (collection != null && collection.isString()) {
+            shape.append(' ').append(collection.asString().getValue());
+        }
+
+        switch (commandName) {
+            case "find" -> {
+                append(shape, "filter", strip(command.get("filter")));
+                append(shape, "sort", command.get("sort"));
+                appendPresent(shape, command, "skip");
+                appendPresent(shape, command, "limit");
+            }
+            case "aggregate" -> append(shape, "pipeline", strip(command.get("pipeline")));
+            case "count" -> append(shape, "query", strip(command.get("query")));
+            case "distinct" -> {
+                append(shape, "key", command.get("key"));
+                append(shape, "query", strip(command.get("query")));
+            }
+            case "findAndModify" -> {
+                append(shape, "query", strip(command.get("query")));
+                append(shape, "sort", command.get("sort"));
+                appendPresent(shape, command, "remove");
+            }
+            case "update" -> append(shape, "q", firstStatement(command, "updates", "q"));
+            case "delete" -> append(shape, "q", firstStatement(command, "deletes", "q"));
+            default -> {
+            }
+        }
+
+        return shape.toString();
+    }
+
+    // bulk writes are counted by the shape of their first statement
+    private static BsonValue firstStatement(BsonDocument command, String statements, String key) {
+        BsonValue value = command.get(statements);
+        if (value == null || !value.isArray() || value.asArray().isEmpty()) {
+            return null;
+        }
+        BsonValue first = value.asArray().get(0);
+        return first.isDocument() ? strip(first.asDocument().get(key)) : null;
+    }
+
+    private static void append(StringBuilder shape, String name, BsonValue value) {
+        if (value != null) {
+            shape.append(' ').append(name).append('=');
+            render(shape, value);
+        }
+    }
+
+    private static void render(StringBuilder shape, BsonValue value) {
+        if (value.isDocument()) {
+            shape.append(value.asDocument().toJson());
+        } else if (value.isArray()) {
+            shape.append('[');
+            for (int i = 0; i < value.asArray().size(); i++) {
+                if (i > 0) {
+                    shape.append(", ");
+                }
+                render(shape, value.asArray().get(i));
+            }
+            shape.append(']');
+        } else if (value.isString()) {
+            shape.append('"').append(value.asString().getValue()).append('"');
+        } else {
+            shape.append(value);
+        }
+    }
+
+    private static void appendPresent(StringBuilder shape, BsonDocument command, String name) {
+        if (command.containsKey(name)) {
+            shape.append(' ').append(name);
+        }
+    }
+
+    /**
+     * Keeps the field names and operators, and replaces every value with "?".
+     * Arrays of plain values, like the ones $in takes, become ["?"] whatever
+     * their length.
+     */
+    static BsonValue strip(BsonValue value) {
+        if (value == null) {
+            return null;
+        }
+
+        if (value.isDocument()) {
+            BsonDocument stripped = new BsonDocument();
+            for (var entry : value.asDocument().entrySet()) {
+                stripped.put(entry.getKey(), strip(entry.getValue()));
+            }
+            return stripped;
+        }
+
+        if (value.isArray()) {
+            BsonArray stripped = new BsonArray();
+            boolean plain = true;
+            for (BsonValue element : value.asArray()) {
+                if (element.isDocument() || element.isArray()) {
+                    plain = false;
+                    stripped.add(strip(element));
+                }
+            }
+            if (plain) {
+                stripped.add(VALUE);
+            }
+            return stripped;
+        }
+
+        // field paths like "$type" in a pipeline are structure, not values
+        if (value.isString() && value.asString().getValue().startsWith("$")) {
+            return value;
+        }
+
+        return VALUE;
+    }
+}
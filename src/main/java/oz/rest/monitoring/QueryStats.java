@@ -0,0 +1,231 @@
+package oz.rest.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoClient;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+/**
+ * Records how long every query takes, grouped by its {@link QueryShape}, so
+ * the slow filter combinations can be found from real traffic. Commands slower
+ * than {@code mongo.slow-query-threshold-ms} are logged along with a summary of
+ * the plan explain picks for them. The explain runs on the executor, never on
+ * the request's thread, and only once a minute per shape.
+ */
+@ApplicationScoped
+public class QueryStats implements CommandListener {
+    private static final Logger logger = LoggerFactory.getLogger(QueryStats.class);
+
+    private static final long EXPLAIN_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @Inject
+    @ConfigProperty(name = "mongo.slow-query-threshold-ms", defaultValue = "100")
+    long slowQueryThresholdMs;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    // looked up lazily, the client is built with this listener in its settings
+    @Inject
+    Instance<MongoClient> client;
+
+    private final Map<String, ShapeStats> shapes = new ConcurrentHashMap<>();
+
+    // commands that have been sent but haven't come back yet, by request id
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+
+    private record Pending(String shape, String database, BsonDocument command) {
+    }
+
+    public static class ShapeStats {
+        private final String shape;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder slow = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private volatile String plan;
+        private volatile long explainedAt;
+
+        ShapeStats(String shape) {
+            this.shape = shape;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getSlowCount() {
+            return slow.sum();
+        }
+
+        public long getFailedCount() {
+            return failed.sum();
+        }
+
+        // null until a command of this shape has been slow
+        public String getPlan() {
+            return plan;
+        }
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        String commandName = event.getCommandName();
+        if (!QueryShape.isRecorded(commandName)) {
+            return;
+        }
+
+        // the command document is only valid during this call, so anything needed
+        // later has to be copied out now
+        BsonDocument command = event.getCommand();
+        String shape = QueryShape.of(commandName, command);
+        BsonDocument explainable = QueryShape.isExplainable(commandName) ? explainable(command) : null;
+
+        pending.put(event.getRequestId(), new Pending(shape, event.getDatabaseName(), explainable));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Pending command = pending.remove(event.getRequestId());
+        if (command != null) {
+            record(command, event.getElapsedTime(TimeUnit.NANOSECONDS), false);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        Pending command = pending.remove(event.getRequestId());
+        if (command != null) {
+            record(command, event.getElapsedTime(TimeUnit.NANOSECONDS), true);
+        }
+    }
+
+    private void record(Pending command, long nanos, boolean failed) {
+        ShapeStats stats = shapes.computeIfAbsent(command.shape(), ShapeStats::new);
+        stats.latency.record(nanos);
+        if (failed) {
+            stats.failed.increment();
+        }
+
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(slowQueryThresholdMs)) {
+            return;
+        }
+
+        stats.slow.increment();
+        logger.warn("Slow query ({} ms): {} plan: {}", nanos / 1_000_000, command.shape(),
+                stats.plan == null ? "not explained yet" : stats.plan);
+
+        long now = System.nanoTime();
+        long explainedAt = stats.explainedAt;
+        if (command.command() != null && executor != null
+                && (explainedAt == 0 || now - explainedAt > EXPLAIN_INTERVAL_NANOS)) {
+            stats.explainedAt = now;
+            executor.execute(() -> explain(stats, command));
+        }
+    }
+
+    private void explain(ShapeStats stats, Pending command) {
+        try {
+            BsonDocument explained = client.get().getDatabase(command.database())
+                    .runCommand(new BsonDocument("explain", command.command())
+                            .append("verbosity", new BsonString("queryPlanner")), BsonDocument.class);
+            stats.plan = summarize(explained);
+            logger.info("Plan for {}: {}", stats.shape, stats.plan);
+        } catch (MongoException e) {
+            logger.warn("Could not explain " + stats.shape, e);
+        }
+    }
+
+    /**
+     * The stages of the winning plan from the top down, e.g.
+     * {@code LIMIT <- FETCH <- IXSCAN {"type": 1, "age": 1}}. A COLLSCAN in
+     * there means no index fits the shape.
+     */
+    static String summarize(BsonDocument explained) {
+        BsonDocument planner = explained.getDocument("queryPlanner", null);
+        if (planner == null) {
+            // aggregations nest the find part of the plan under their first stage
+            BsonValue stages = explained.get("stages");
+            if (stages != null && stages.isArray() && !stages.asArray().isEmpty()) {
+                BsonDocument cursor = stages.asArray().get(0).asDocument().getDocument("$cursor", null);
+                planner = cursor == null ? null : cursor.getDocument("queryPlanner", null);
+            }
+        }
+        if (planner == null || !planner.containsKey("winningPlan")) {
+            return "unknown";
+        }
+
+        List<String> stages = new ArrayList<>();
+        BsonDocument stage = planner.getDocument("winningPlan");
+        // newer servers wrap the classic plan in queryPlan
+        if (stage.containsKey("queryPlan")) {
+            stage = stage.getDocument("queryPlan");
+        }
+        while (stage != null) {
+            String name = stage.getString("stage", new BsonString("?")).getValue();
+            if (stage.containsKey("keyPattern")) {
+                name += " " + stage.getDocument("keyPattern").toJson();
+            }
+            stages.add(name);
+            stage = stage.getDocument("inputStage", null);
+        }
+        return String.join(" <- ", stages);
+    }
+
+    // just the parts of the command explain needs, without the session and
+    // cluster time fields the driver adds
+    private static BsonDocument explainable(BsonDocument command) {
+        BsonDocument copy = new BsonDocument();
+        // clone() copies the bytes out of the driver's buffer
+        for (var entry : command.clone().entrySet()) {
+            if (!entry.getKey().startsWith("$") && !entry.getKey().equals("lsid")
+                    && !entry.getKey().equals("txnNumber")) {
+                copy.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * The shapes seen so far, the most total time spent first.
+     */
+    public List<ShapeStats> getShapes() {
+        List<ShapeStats> sorted = new ArrayList<>(shapes.values());
+        sorted.sort(Comparator.comparingDouble((ShapeStats s) -> s.latency.getTotalMillis()).reversed());
+        return sorted;
+    }
+
+    public long getSlowQueryThresholdMs() {
+        return slowQueryThresholdMs;
+    }
+
+    public void reset() {
+        shapes.clear();
+    }
+}
@@ -0,0 +1,241 @@
+package oz.rest.search;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import oz.rest.models.AbstractModel;
+import oz.rest.models.Pet;
+import oz.rest.models.Shelter;
+import oz.rest.services.ModelWrite;
+
+/**
+ * Prefix suggestions for the type-ahead boxes, weighted by how many pets or
+ * shelters have the value. Each field is a {@link WeightedTrie} built from a
+ * scan when the application starts and kept up to date from the services'
+ * {@link ModelWrite}s, so suggesting never touches the database. Turned on
+ * with {@code autocomplete.enabled}; like the other in-memory indexes it only
+ * follows the writes of this instance, so it is only correct when this is the
+ * only instance writing pets and shelters.
+ */
+@ApplicationScoped
+public class Autocomplete {
+    private static final Logger logger = LoggerFactory.getLogger(Autocomplete.class);
+
+    /**
+     * A field values are suggested from, with where it's stored.
+     */
+    public enum Field {
+        BREED("breed", Pet.class, "Pets", "breed", model -> ((Pet) model).getBreed()),
+        PET_NAME("pet_name", Pet.class, "Pets", "name", model -> ((Pet) model).getName()),
+        SHELTER_NAME("shelter_name", Shelter.class, "Shelters", "name", model -> ((Shelter) model).getName());
+
+        private final String param;
+        private final Class<? extends AbstractModel> type;
+        private final String collection;
+        private final String storedName;
+        private final Function<AbstractModel, String> value;
+
+        Field(String param, Class<? extends AbstractModel> type, String collection, String storedName,
+                Function<AbstractModel, String> value) {
+            this.param = param;
+            this.type = type;
+            this.collection = collection;
+            this.storedName = storedName;
+            this.value = value;
+        }
+
+        // null if there's no such field
+        public static Field of(String param) {
+            for (Field field : values()) {
+                if (field.param.equals(param)) {
+                    return field;
+                }
+            }
+            return null;
+        }
+    }
+
+    // a trie plus which value each document added, to take it back out on
+    // updates and deletes. Only writers touch the values, under the bean's
+    // lock; the trie is swapped for a new one on every change so complete()
+    // can read it without one
+    private static final class Suggestions {
+        volatile WeightedTrie trie = new WeightedTrie();
+        final Map<ObjectId, String> values = new HashMap<>();
+
+        void put(ObjectId id, String value) {
+            String old = values.put(id, value);
+            trie = trie.with(old, -1).with(value, 1);
+            if (value == null) {
+                values.remove(id);
+            }
+        }
+
+        void remove(ObjectId id) {
+            trie = trie.with(values.remove(id), -1);
+        }
+    }
+
+    @Inject
+    @ConfigProperty(name = "autocomplete.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    MongoDatabase db;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    // read without the lock, so rebuilds swapping a field's suggestions have
+    // to be seen by complete()
+    private final Map<Field, Suggestions> suggestions = new ConcurrentHashMap<>();
+
+    // writes that happen while a field is being rebuilt, applied once it's done
+    private final Map<Field, List<ModelWrite>> missed = new HashMap<>();
+
+    // fields a rebuild was asked for while they were being rebuilt
+    private final Set<Field> rebuildAgain = EnumSet.noneOf(Field.class);
+
+    public Autocomplete() {
+        for (Field field : Field.values()) {
+            suggestions.put(field, new Suggestions());
+        }
+    }
+
+    void onStart(@Observes Startup startup) {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(() -> {
+            for (Field field : Field.values()) {
+                rebuild(field);
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the field's trie from a scan of its collection.
+     */
+    public void rebuild(Field field) {
+        synchronized (this) {
+            if (missed.containsKey(field)) {
+                // already rebuilding, but it may have scanned past whatever this
+                // one is for, so it has to scan again once it's done
+                rebuildAgain.add(field);
+                return;
+            }
+            missed.put(field, new ArrayList<>());
+        }
+
+        boolean again;
+        do {
+            Suggestions rebuilt = scan(field);
+
+            synchronized (this) {
+                List<ModelWrite> writes = missed.remove(field);
+                if (rebuilt != null) {
+                    for (ModelWrite write : writes) {
+                        apply(field, rebuilt, write);
+                    }
+                    suggestions.put(field, rebuilt);
+                }
+                again = rebuildAgain.remove(field);
+                if (again) {
+                    missed.put(field, new ArrayList<>());
+                }
+            }
+        } while (again);
+    }
+
+    // null if it couldn't be read
+    private Suggestions scan(Field field) {
+        Suggestions scanned = new Suggestions();
+        try (MongoCursor<RawBsonDocument> documents = db.getCollection(field.collection, RawBsonDocument.class)
+                .find()
+                .projection(Projections.include(field.storedName))
+                .iterator()) {
+            while (documents.hasNext()) {
+                RawBsonDocument document = documents.next();
+                BsonValue value = document.get(field.storedName);
+                if (value != null && value.isString()) {
+                    scanned.put(document.getObjectId("_id").getValue(), value.asString().getValue());
+                }
+            }
+        } catch (MongoException e) {
+            logger.error("Could not load the " + field.param + " suggestions", e);
+            return null;
+        }
+        return scanned;
+    }
+
+    void onWrite(@Observes ModelWrite write) {
+        if (!enabled) {
+            return;
+        }
+        List<Field> rebuild = new ArrayList<>();
+
+        synchronized (this) {
+            for (Field field : Field.values()) {
+                if (!write.isFor(field.type)) {
+                    continue;
+                }
+                if (write.kind() == ModelWrite.Kind.INVALIDATE) {
+                    rebuild.add(field);
+                    continue;
+                }
+                if (missed.containsKey(field)) {
+                    missed.get(field).add(write);
+                }
+                apply(field, suggestions.get(field), write);
+            }
+        }
+
+        if (!rebuild.isEmpty() && executor != null) {
+            executor.execute(() -> rebuild.forEach(this::rebuild));
+        }
+    }
+
+    private static void apply(Field field, Suggestions suggestions, ModelWrite write) {
+        switch (write.kind()) {
+            case INSERT, UPDATE -> suggestions.put(write.id(), field.value.apply(write.model()));
+            case DELETE -> suggestions.remove(write.id());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * At most {@code limit} values of the field starting with the prefix, the
+     * most common first, or null if suggestions aren't turned on.
+     */
+    public List<WeightedTrie.Suggestion> complete(Field field, String prefix, int limit) {
+        if (!enabled) {
+            return null;
+        }
+        return suggestions.get(field).trie.complete(prefix, limit);
+    }
+}
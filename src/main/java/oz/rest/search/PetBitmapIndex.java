@@ -0,0 +1,206 @@
+package oz.rest.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import oz.rest.models.Pet;
+import oz.rest.services.ModelWrite;
+import oz.rest.services.PetFilter;
+
+/**
+ * Keeps {@link PetBitmaps} of every pet in memory so {@code GET /pet} only has
+ * to ask mongo for the page of pets it ends up returning. Turned on with
+ * {@code pets.bitmap-index.enabled}. It is built from a scan of the collection
+ * at startup and then follows the writes made through the services of this
+ * instance, so it is only correct when this is the only instance writing pets.
+ * Until it is built, or whenever it can't answer a filter, page() returns null
+ * and the search goes to mongo like before.
+ */
+@ApplicationScoped
+public class PetBitmapIndex {
+    private static final Logger logger = LoggerFactory.getLogger(PetBitmapIndex.class);
+
+    @Inject
+    @ConfigProperty(name = "pets.bitmap-index.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @Inject
+    MongoDatabase db;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // null until the first build is done
+    private PetBitmaps bitmaps;
+
+    // writes that happen while a rebuild is scanning, applied once it's done
+    private List<ModelWrite> missed;
+
+    // a rebuild was asked for while one was scanning
+    private boolean rebuildAgain;
+
+    void onStart(@Observes Startup startup) {
+        if (enabled) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    /**
+     * Scans the whole collection into new bitmaps and swaps them in.
+     */
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            if (missed != null) {
+                // already rebuilding, but it may have scanned past whatever this
+                // one is for, so it has to scan again once it's done
+                rebuildAgain = true;
+                return;
+            }
+            missed = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        boolean again;
+        do {
+            PetBitmaps rebuilt = scan();
+
+            lock.writeLock().lock();
+            try {
+                if (rebuilt != null) {
+                    for (ModelWrite write : missed) {
+                        apply(rebuilt, write);
+                    }
+                    bitmaps = rebuilt;
+                }
+                again = rebuildAgain;
+                rebuildAgain = false;
+                missed = again ? new ArrayList<>() : null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } while (again);
+    }
+
+    // null if it couldn't be read
+    private PetBitmaps scan() {
+        PetBitmaps rebuilt = new PetBitmaps();
+        List<String> attributes = PetBitmaps.attributes();
+        List<String> fields = new ArrayList<>(attributes);
+        fields.add("age");
+
+        long started = System.nanoTime();
+        try (MongoCursor<RawBsonDocument> pets = db.getCollection("Pets", RawBsonDocument.class)
+                .find()
+                .projection(Projections.include(fields))
+                .sort(Sorts.ascending("_id"))
+                .iterator()) {
+            String[] values = new String[attributes.size()];
+            while (pets.hasNext()) {
+                RawBsonDocument pet = pets.next();
+                for (int i = 0; i < values.length; i++) {
+                    BsonValue value = pet.get(attributes.get(i));
+                    values[i] = value != null && value.isString() ? value.asString().getValue() : null;
+                }
+                BsonValue age = pet.get("age");
+                rebuilt.put(pet.getObjectId("_id").getValue(), values,
+                        age != null && age.isInt32() ? age.asInt32().getValue() : null);
+            }
+        } catch (MongoException e) {
+            logger.error("Could not build the pet bitmap index, searches will use mongo", e);
+            return null;
+        }
+
+        logger.info("Built the pet bitmap index of {} pets in {} ms", rebuilt.size(),
+                (System.nanoTime() - started) / 1_000_000);
+        return rebuilt;
+    }
+
+    void onWrite(@Observes ModelWrite write) {
+        if (!enabled || !write.isFor(Pet.class)) {
+            return;
+        }
+
+        if (write.kind() == ModelWrite.Kind.INVALIDATE) {
+            executor.execute(this::rebuild);
+            return;
+        }
+
+        boolean unordered;
+
+        lock.writeLock().lock();
+        try {
+            if (missed != null) {
+                missed.add(write);
+            }
+            if (bitmaps != null) {
+                apply(bitmaps, write);
+            }
+            unordered = missed == null && bitmaps != null && !bitmaps.isOrdered();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        // a pet with an older id than the newest one (made somewhere else) was
+        // added, so the slots need sorting again
+        if (unordered) {
+            executor.execute(this::rebuild);
+        }
+    }
+
+    private static void apply(PetBitmaps bitmaps, ModelWrite write) {
+        switch (write.kind()) {
+            case INSERT, UPDATE -> {
+                Pet pet = (Pet) write.model();
+                bitmaps.put(write.id(), PetBitmaps.valuesOf(pet), pet.getAge());
+            }
+            case DELETE -> bitmaps.remove(write.id());
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * The ids of the first {@code limit} pets matching the filter after the
+     * given id, in _id order, or null if the index can't answer it.
+     */
+    public List<ObjectId> page(PetFilter filter, ObjectId after, int limit) {
+        if (!enabled) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (bitmaps == null || !bitmaps.supports(filter)) {
+                return null;
+            }
+            return bitmaps.page(filter, after, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package oz.rest.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.bson.types.ObjectId;
+
+import oz.rest.models.Pet;
+import oz.rest.services.PetFilter;
+
+/**
+ * One bitmap per value of each low cardinality pet attribute, and one per age,
+ * so a {@link PetFilter} is answered by ANDing a handful of bitmaps instead of
+ * asking mongo. Every pet gets a slot, its bit in the bitmaps, in the order
+ * they are added. As long as they are added in _id order (a rebuild scans by
+ * _id, and new ObjectIds are increasing) the slots are in _id order too, and a
+ * page after some _id is just the next set bits after its slot.
+ *
+ * Not thread-safe, see {@link PetBitmapIndex}.
+ */
+public class PetBitmaps {
+    // the attributes filtered by equality, with how to read them off pets and filters
+    private static final List<String> ATTRIBUTES = List.of("type", "sex", "size", "color", "health",
+            "currentShelterId", "breed");
+
+    private static final List<Function<Pet, String>> PET_VALUES = List.of(Pet::getType, Pet::getSex, Pet::getSize,
+            Pet::getColor, Pet::getHealth, Pet::getCurrentShelterId, Pet::getBreed);
+
+    private static final List<Function<PetFilter, List<String>>> FILTER_VALUES = List.of(
+            PetFilter::getType,
+            filter -> one(filter.getSex()),
+            filter -> one(filter.getSize()),
+            filter -> one(filter.getColor()),
+            filter -> one(filter.getHealth()),
+            filter -> one(filter.getCurrentShelterId()),
+            filter -> one(filter.getBreed()));
+
+    private static final int NO_AGE = Integer.MIN_VALUE;
+
+    // value -> pets that have it, per attribute
+    private final List<Map<String, BitSet>> bitmaps = new ArrayList<>();
+    private final NavigableMap<Integer, BitSet> ages = new TreeMap<>();
+    private final BitSet live = new BitSet();
+
+    // per slot; deleted pets keep their id so the ids stay sorted for binary search
+    private ObjectId[] ids = new ObjectId[1024];
+    private String[][] values = new String[ATTRIBUTES.size()][1024];
+    private int[] slotAges = new int[1024];
+    private int size;
+
+    private final Map<ObjectId, Integer> slots = new HashMap<>();
+
+    // false once a pet was added out of _id order, until the next rebuild
+    private boolean ordered = true;
+
+    public PetBitmaps() {
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            bitmaps.add(new HashMap<>());
+        }
+    }
+
+    private static List<String> one(String value) {
+        return value == null ? null : List.of(value);
+    }
+
+    public static String[] valuesOf(Pet pet) {
+        String[] values = new String[ATTRIBUTES.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = PET_VALUES.get(i).apply(pet);
+        }
+        return values;
+    }
+
+    /**
+     * The stored field names of the attributes, in the order
+     * {@link #put(ObjectId, String[], Integer)} takes their values.
+     */
+    public static List<String> attributes() {
+        return ATTRIBUTES;
+    }
+
+    public void put(Pet pet) {
+        put(pet.getId(), valuesOf(pet), pet.getAge());
+    }
+
+    /**
+     * Adds the pet, or replaces what is known about it if it was added before.
+     */
+    public void put(ObjectId id, String[] attributeValues, Integer age) {
+        Integer existing = slots.get(id);
+        int slot;
+
+        if (existing != null) {
+            slot = existing;
+            clear(slot);
+        } else {
+            if (size > 0 && id.compareTo(ids[size - 1]) <= 0) {
+                ordered = false;
+            }
+            slot = size++;
+            grow();
+            ids[slot] = id;
+            slots.put(id, slot);
+        }
+
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            String value = attributeValues[i];
+            values[i][slot] = value;
+            if (value != null) {
+                bitmaps.get(i).computeIfAbsent(value, v -> new BitSet()).set(slot);
+            }
+        }
+
+        slotAges[slot] = age == null ? NO_AGE : age;
+        if (age != null) {
+            ages.computeIfAbsent(age, a -> new BitSet()).set(slot);
+        }
+
+        live.set(slot);
+    }
+
+    public void remove(ObjectId id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            clear(slot);
+            live.clear(slot);
+        }
+    }
+
+    private void clear(int slot) {
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            String value = values[i][slot];
+            if (value != null) {
+                BitSet bitmap = bitmaps.get(i).get(value);
+                bitmap.clear(slot);
+                if (bitmap.isEmpty()) {
+                    bitmaps.get(i).remove(value);
+                }
+                values[i][slot] = null;
+            }
+        }
+
+        if (slotAges[slot] != NO_AGE) {
+            BitSet bitmap = ages.get(slotAges[slot]);
+            bitmap.clear(slot);
+            if (bitmap.isEmpty()) {
+                ages.remove(slotAges[slot]);
+            }
+            slotAges[slot] = NO_AGE;
+        }
+    }
+
+    private void grow() {
+        if (size > ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            slotAges = Arrays.copyOf(slotAges, capacity);
+            for (int i = 0; i < values.length; i++) {
+                values[i] = Arrays.copyOf(values[i], capacity);
+            }
+        }
+    }
+
+    // slots are out of _id order and pages can't be read off them until rebuilt
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    /**
+     * Whether {@link #page} can answer the filter. Names and free text are
+     * matched by mongo's indexes instead.
+     */
+    public boolean supports(PetFilter filter) {
+        return ordered && filter.getName() == null && !filter.hasText();
+    }
+
+    /**
+     * The ids of the first {@code limit} pets matching the filter whose _id is
+     * greater than {@code after} (or from the start if it is null), in _id order.
+     */
+    public List<ObjectId> page(PetFilter filter, ObjectId after, int limit) {
+        BitSet matches = matching(filter);
+
+        int from = 0;
+        if (after != null) {
+            int found = Arrays.binarySearch(ids, 0, size, after);
+            from = found >= 0 ? found + 1 : -found - 1;
+        }
+
+        List<ObjectId> page = new ArrayList<>(Math.min(limit, 1024));
+        for (int slot = matches.nextSetBit(from); slot >= 0 && page.size() < limit; slot = matches.nextSetBit(slot + 1)) {
+            page.add(ids[slot]);
+        }
+        return page;
+    }
+
+    public int count(PetFilter filter) {
+        return matching(filter).cardinality();
+    }
+
+    private BitSet matching(PetFilter filter) {
+        BitSet matches = (BitSet) live.clone();
+
+        for (int i = 0; i < ATTRIBUTES.size(); i++) {
+            List<String> wanted = FILTER_VALUES.get(i).apply(filter);
+            if (wanted == null || wanted.isEmpty()) {
+                continue;
+            }
+
+            matches.and(union(bitmaps.get(i), wanted));
+            if (matches.isEmpty()) {
+                return matches;
+            }
+        }
+
+        Integer minAge = filter.getMinAge();
+        Integer maxAge = filter.getMaxAge();
+        if (minAge != null || maxAge != null) {
+            int from = minAge == null ? Integer.MIN_VALUE + 1 : minAge;
+            int to = maxAge == null ? Integer.MAX_VALUE : maxAge;
+            if (from > to) {
+                // mongo matches nothing for an upside down range, subMap would throw
+                return new BitSet();
+            }
+
+            // pets without an age match no age range, like in mongo
+            BitSet inRange = new BitSet();
+            for (BitSet bitmap : ages.subMap(from, true, to, true).values()) {
+                inRange.or(bitmap);
+            }
+            matches.and(inRange);
+        }
+
+        return matches;
+    }
+
+    private static BitSet union(Map<String, BitSet> bitmaps, List<String> wanted) {
+        if (wanted.size() == 1) {
+            return bitmaps.getOrDefault(wanted.get(0), new BitSet());
+        }
+
+        BitSet union = new BitSet();
+        for (String value : wanted) {
+            BitSet bitmap = bitmaps.get(value);
+            if (bitmap != null) {
+                union.or(bitmap);
+            }
+        }
+        return union;
+    }
+}
@@ -0,0 +1,160 @@
+package oz.rest.search;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A trie of terms weighted by how often they occur. Every node keeps the
+ * heaviest {@link #MAX_SUGGESTIONS} terms below it, so completing a prefix is
+ * a walk down to the prefix's node and a copy of its list, however many terms
+ * share the prefix. Matching ignores case; the first spelling added is the
+ * one suggested.
+ *
+ * A trie is never changed, with() makes a new one that copies only the nodes
+ * along the term's path and shares the rest, so it can be read from any
+ * number of threads without locking, see {@link Autocomplete}.
+ */
+public class WeightedTrie {
+    public static final int MAX_SUGGESTIONS = 10;
+
+    public record Suggestion(String value, int weight) {
+    }
+
+    private static final Comparator<Node> heaviestFirst = Comparator.comparingInt((Node n) -> n.weight).reversed()
+            .thenComparing(n -> n.term);
+
+    private static final class Node {
+        final Map<Character, Node> children;
+        // set while the node ends a term, i.e. its weight is above 0
+        final String term;
+        final int weight;
+        final List<Node> top;
+
+        Node(Map<Character, Node> children, String term, int weight) {
+            this.children = children;
+            this.term = term;
+            this.weight = weight;
+
+            List<Node> candidates = new ArrayList<>();
+            if (weight > 0) {
+                candidates.add(this);
+            }
+            for (Node child : children.values()) {
+                candidates.addAll(child.top);
+            }
+
+            candidates.sort(heaviestFirst);
+            top = candidates.size() > MAX_SUGGESTIONS
+                    ? List.copyOf(candidates.subList(0, MAX_SUGGESTIONS))
+                    : List.copyOf(candidates);
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    public WeightedTrie() {
+        this(new Node(Map.of(), null, 0), 0);
+    }
+
+    private WeightedTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    static String key(String term) {
+        return term.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * A trie with {@code delta} added to the term's weight. Terms whose weight
+     * drops to 0 are removed.
+     */
+    public WeightedTrie with(String term, int delta) {
+        if (term == null || term.isBlank() || delta == 0) {
+            return this;
+        }
+
+        String key = key(term);
+        // the nodes along the term's path, null from where it leaves the trie
+        Node[] path = new Node[key.length() + 1];
+        path[0] = root;
+        for (int i = 0; i < key.length() && path[i] != null; i++) {
+            path[i + 1] = path[i].children.get(key.charAt(i));
+        }
+
+        Node end = path[key.length()];
+        int oldWeight = end == null ? 0 : end.weight;
+        int weight = Math.max(oldWeight + delta, 0);
+        if (weight == oldWeight) {
+            // e.g. taking away a term that was never added
+            return this;
+        }
+
+        // bottom up, each node on the path copied with its new child, or
+        // without it if the child has nothing left under it
+        Node replaced = null;
+        for (int i = key.length(); i >= 0; i--) {
+            Node node = path[i];
+            Map<Character, Node> children = node == null ? new HashMap<>(4) : new HashMap<>(node.children);
+            String nodeTerm = node == null ? null : node.term;
+            int nodeWeight = node == null ? 0 : node.weight;
+
+            if (i == key.length()) {
+                nodeWeight = weight;
+                nodeTerm = weight == 0 ? null : nodeTerm != null ? nodeTerm : term.trim();
+            } else if (replaced == null) {
+                children.remove(key.charAt(i));
+            } else {
+                children.put(key.charAt(i), replaced);
+            }
+
+            replaced = i > 0 && nodeWeight == 0 && children.isEmpty()
+                    ? null
+                    : new Node(children, nodeTerm, nodeWeight);
+        }
+
+        return new WeightedTrie(replaced, size + (weight > 0 ? 1 : 0) - (oldWeight > 0 ? 1 : 0));
+    }
+
+    /**
+     * The heaviest terms starting with the prefix, at most
+     * {@link #MAX_SUGGESTIONS}.
+     */
+    public List<Suggestion> complete(String prefix, int limit) {
+        Node node = root;
+        String key = key(prefix);
+
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+
+        List<Suggestion> suggestions = new ArrayList<>(Math.min(limit, node.top.size()));
+        for (int i = 0; i < node.top.size() && i < limit; i++) {
+            Node term = node.top.get(i);
+            suggestions.add(new Suggestion(term.term, term.weight));
+        }
+        return suggestions;
+    }
+
+    public int weight(String term) {
+        Node node = root;
+        String key = key(term);
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.children.get(key.charAt(i));
+        }
+        return node == null ? 0 : node.weight;
+    }
+
+    // distinct terms
+    public int size() {
+        return size;
+    }
+}
@@ -1,32 +1,109 @@
 package oz.rest.services;
 
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import jakarta.validation.Validator;
 import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.PATCH;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoServerException;
+import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 
 // import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.validation.ConstraintViolation;
+import oz.rest.models.AbstractModel;
 
 // not completely sure, but I don't think this is applicationscoped
 // @ApplicationScoped
 @Consumes(MediaType.APPLICATION_JSON)
 @Produces(MediaType.APPLICATION_JSON)
-public abstract class AbstractService<T> {
+public abstract class AbstractService<T extends AbstractModel> {
     @Inject
     protected MongoDatabase db;
 
     @Inject
     protected Validator validator;
 
+    @Inject
+    protected Event<ModelWrite> writes;
+
+    // more ids than this in one batch and the client should split it up
+    protected static final int MAX_BATCH_SIZE = 1000;
+
+    private final String collectionName;
+    private final Class<T> modelClass;
+    private final RawJsonView view;
+
+    // looked up once per service instead of on every request, see collection()
+    private volatile MongoCollection<T> collection;
+    private volatile MongoCollection<RawBsonDocument> rawCollection;
+
+    protected AbstractService(String collectionName, Class<T> modelClass, RawJsonView view) {
+        this.collectionName = collectionName;
+        this.modelClass = modelClass;
+        this.view = view;
+    }
+
+    /**
+     * The typed handle of the collection this service manages. The services are
+     * application scoped, so this is only looked up the first time it is needed.
+     */
+    protected MongoCollection<T> collection() {
+        if (collection == null) {
+            collection = db.getCollection(collectionName, modelClass);
+        }
+        return collection;
+    }
+
+    /**
+     * Same collection as {@link #collection()}, for reads that are passed through
+     * without being decoded into models.
+     */
+    protected MongoCollection<RawBsonDocument> rawCollection() {
+        if (rawCollection == null) {
+            rawCollection = collection().withDocumentClass(RawBsonDocument.class);
+        }
+        return rawCollection;
+    }
+
     protected JsonArray getViolations(T data) {
         Set<ConstraintViolation<T>> violations = validator.validate(data);
 
@@ -38,13 +115,337 @@ public abstract class AbstractService<T> {
 
         return messages.build();
     }
+
+    /**
+     * Tells the observers of {@link ModelWrite} that a model of this service's
+     * collection was written. Call it once the write has succeeded.
+     */
+    protected void fireWrite(ModelWrite.Kind kind, ObjectId id, T model) {
+        // null when a test builds the service by hand
+        if (writes != null) {
+            writes.fire(new ModelWrite(kind, modelClass, id, model));
+        }
+    }
+
+    /**
+     * Tells the observers that many models of the type changed at once, so
+     * anything they keep about it has to be reloaded.
+     */
+    protected void fireInvalidate(Class<? extends AbstractModel> type) {
+        if (writes != null) {
+            writes.fire(new ModelWrite(ModelWrite.Kind.INVALIDATE, type, null, null));
+        }
+    }
+
+    // what a bson date can hold, so a model has the same time as its document
+    protected static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    /**
+     * Makes the model the first version, right before it's inserted.
+     */
+    protected static void stampInsert(AbstractModel model) {
+        model.setVersion(1L);
+        model.setLastModified(now());
+    }
+
+    /**
+     * Bumps the version and lastModified of whatever the update is combined with.
+     */
+    protected static Bson stampUpdate() {
+        return Updates.combine(Updates.inc("version", 1L), Updates.set("lastModified", now()));
+    }
+
+    /**
+     * Replaces the stored document with the entry and bumps its version, as one
+     * pipeline update so the version can't be lost to a concurrent write.
+     *
+     * @return the stored result, or null if there's no such document
+     */
+    protected T replace(ObjectId oid, T entry) {
+        entry.setId(oid);
+        // whatever the client sent is replaced by the stamp below
+        entry.setVersion(null);
+        entry.setLastModified(null);
+
+        Document stamp = new Document("version",
+                new Document("$add", List.of(new Document("$ifNull", List.of("$version", 0L)), 1L)))
+                .append("lastModified", now());
+        // $literal so values that start with $ aren't taken as field paths
+        Document replaceWith = new Document("$replaceWith",
+                new Document("$mergeObjects", List.of(new Document("$literal", entry), stamp)));
+
+        return collection().findOneAndUpdate(eq("_id", oid), List.of(replaceWith),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+    }
+
+    private static final Document VERSION_INDEX = new Document("_id", 1).append("version", 1).append("lastModified", 1);
+
+    private static long versionOf(RawBsonDocument document) {
+        BsonValue version = document.get("version");
+        return version != null && version.isNumber() ? version.asNumber().longValue() : 0;
+    }
+
+    private static Instant lastModifiedOf(RawBsonDocument document) {
+        BsonValue lastModified = document.get("lastModified");
+        return lastModified != null && lastModified.isDateTime()
+                ? Instant.ofEpochMilli(lastModified.asDateTime().getValue())
+                : null;
+    }
+
+    /**
+     * A 304 if the client's copy of the document is still current, null if it
+     * isn't or the document doesn't exist. The check only reads the version
+     * index, not the document.
+     */
+    protected Response notModified(ObjectId oid, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch == null && ifModifiedSince == null) {
+            return null;
+        }
+
+        var versionOnly = rawCollection().find(eq("_id", oid))
+                .projection(Projections.include("version", "lastModified"));
+
+        RawBsonDocument current;
+        try {
+            // without the hint an _id lookup always goes through the _id index and
+            // reads the document
+            current = versionOnly.hint(VERSION_INDEX).first();
+        } catch (MongoServerException e) {
+            if (!isBadHint(e)) {
+                throw e;
+            }
+            // the index isn't built yet
+            current = versionOnly.first();
+        }
+
+        if (current == null) {
+            return null;
+        }
+
+        if (!Preconditions.isNotModified(ifNoneMatch, ifModifiedSince, Preconditions.etag(versionOf(current)),
+                lastModifiedOf(current))) {
+            return null;
+        }
+
+        return withValidators(Response.notModified(), current).build();
+    }
+
+    // what the server says when a hinted index doesn't exist, BadValue with the
+    // planner's "hint provided does not correspond to an existing index"
+    static boolean isBadHint(MongoServerException e) {
+        return e.getCode() == 2 && e.getMessage() != null && e.getMessage().contains("hint");
+    }
+
+    /**
+     * Adds the ETag and Last-Modified headers of the stored document.
+     */
+    protected static Response.ResponseBuilder withValidators(Response.ResponseBuilder response,
+            RawBsonDocument document) {
+        response.header("ETag", Preconditions.etag(versionOf(document)));
+
+        Instant lastModified = lastModifiedOf(document);
+        if (lastModified != null) {
+            response.header("Last-Modified", Preconditions.httpDate(lastModified));
+        }
+        return response;
+    }
+
     public void setValidator(Validator validator) {
         this.validator = validator;
     }
 
-    // TODO maybe: if there is a way to get generic T's class as
-    // well as all of its getter methods, the following methods could
-    // be implemented concretely here
+    // the ids of a ?ids=a,b,c query parameter
+    protected static List<String> splitIds(String ids) {
+        List<String> split = new ArrayList<>();
+        for (String id : ids.split(",")) {
+            if (!id.isBlank()) {
+                split.add(id.trim());
+            }
+        }
+        return split;
+    }
+
+    /**
+     * Looks up all of the ids with one query and returns
+     * {"items": [...], "missing": [...]}, the items in the order they were asked
+     * for and the ids that weren't found in missing. Asking for the same id
+     * twice returns it once.
+     */
+    @POST
+    @Path("/batch")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The ones that were found, in the order asked for, and the ids that weren't"),
+            @APIResponse(responseCode = "400", description = "No ids, too many ids or invalid ids")
+    })
+    @Operation(summary = "Retrieve many by their ids at once, for lists too long for ?ids=")
+    public Response retrieveMany(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"No ids were given!\"]")
+                    .build();
+        }
+
+        Set<String> distinct = new LinkedHashSet<>(ids);
+
+        if (distinct.size() > MAX_BATCH_SIZE) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"At most " + MAX_BATCH_SIZE + " ids can be retrieved at once!\"]")
+                    .build();
+        }
+
+        // check all of them first, so every bad id is reported at once
+        List<ObjectId> oids = new ArrayList<>(distinct.size());
+        JsonArrayBuilder invalid = Json.createArrayBuilder();
+        boolean anyInvalid = false;
+
+        for (String id : distinct) {
+            if (id != null && ObjectId.isValid(id)) {
+                oids.add(new ObjectId(id));
+            } else {
+                invalid.add("Invalid object id: " + id + "!");
+                anyInvalid = true;
+            }
+        }
+
+        if (anyInvalid) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity(invalid.build().toString())
+                    .build();
+        }
+
+        Map<ObjectId, RawBsonDocument> found = new HashMap<>();
+        for (RawBsonDocument document : rawCollection().find(in("_id", oids))) {
+            found.put(document.getObjectId("_id").getValue(), document);
+        }
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = RawJsonView.generator(json)) {
+            generator.writeStartObject();
+
+            generator.writeStartArray("items");
+            for (ObjectId oid : oids) {
+                RawBsonDocument document = found.get(oid);
+                if (document != null) {
+                    view.write(document, generator);
+                }
+            }
+            generator.writeEnd();
+
+            generator.writeStartArray("missing");
+            for (ObjectId oid : oids) {
+                if (!found.containsKey(oid)) {
+                    generator.write(oid.toHexString());
+                }
+            }
+            generator.writeEnd();
+
+            generator.writeEnd();
+        }
+
+        return Response.ok(json.toString()).build();
+    }
+
+    /**
+     * Changes only the fields in the patch, a json merge patch: members set to a
+     * value are set, members set to null are removed and nested objects are
+     * merged into. Only the changed fields are validated, and the whole patch is
+     * one atomic update instead of a read and a replace.
+     */
+    @PATCH
+    @Path("/{id}")
+    @Consumes({ MergePatch.MEDIA_TYPE, MediaType.APPLICATION_JSON })
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "Successfully patched, returns the result"),
+            @APIResponse(responseCode = "400", description = "Invalid id, unknown fields or invalid values"),
+            @APIResponse(responseCode = "404", description = "Not found"),
+            @APIResponse(responseCode = "409", description = "The change conflicts with another entry")
+    })
+    @Operation(summary = "Change some of the fields")
+    public Response patch(@PathParam("id") String id, JsonObject patch) {
+        if (id == null || !ObjectId.isValid(id)) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Invalid object id!\"]")
+                    .build();
+        }
+
+        if (patch == null) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The patch must be a json object!\"]")
+                    .build();
+        }
+
+        MergePatch merge = MergePatch.of(modelClass, patch, validator, this::patchValue);
+        if (!merge.isValid()) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity(merge.errors().toString())
+                    .build();
+        }
+
+        Bson update = merge.update();
+        Bson derived = derivedUpdate(patch);
+        if (derived != null) {
+            update = update == null ? derived : Updates.combine(update, derived);
+        }
+
+        if (update == null) {
+            // nothing to change
+            return retrieve(id);
+        }
+        update = Updates.combine(update, stampUpdate());
+
+        ObjectId oid = new ObjectId(id);
+        T updated;
+
+        try {
+            updated = collection().findOneAndUpdate(eq("_id", oid), update,
+                    new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        } catch (MongoServerException e) {
+            if (ErrorCategory.fromErrorCode(e.getCode()) == ErrorCategory.DUPLICATE_KEY) {
+                return Response
+                        .status(Response.Status.CONFLICT)
+                        .entity("[\"Another entry already has that value!\"]")
+                        .build();
+            }
+            throw e;
+        }
+
+        if (updated == null) {
+            return Response
+                    .status(Response.Status.NOT_FOUND)
+                    .entity("[\"_id was not found!\"]")
+                    .build();
+        }
+
+        fireWrite(ModelWrite.Kind.UPDATE, oid, updated);
+        return Response.ok(updated.toJson()).build();
+    }
+
+    /**
+     * Lets a service change a patched value before it's stored, the same way its
+     * add and update do. The property is the dotted path of the field.
+     */
+    protected Object patchValue(String property, Object value) {
+        return value;
+    }
+
+    /**
+     * Lets a service keep fields derived from others in step with a patch, in
+     * the same update. Null if there's nothing else to change.
+     */
+    protected Bson derivedUpdate(JsonObject patch) {
+        return null;
+    }
+
+    // TODO maybe: now that the collection and T's class are known here, the
+    // following methods could be implemented concretely here
 
     abstract public Response add(T newEntry);
 
@@ -0,0 +1,119 @@
+package oz.rest.services;
+
+import java.io.StringReader;
+
+import org.bson.Document;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import com.mongodb.client.MongoDatabase;
+
+import jakarta.annotation.security.RolesAllowed;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import oz.rest.geo.ZipCodeLocator;
+import oz.rest.monitoring.LatencyHistogram;
+import oz.rest.monitoring.QueryStats;
+
+// query shapes and plans say a lot about the data, and the counters can be
+// reset, so all of it needs a token with the admin group
+@Tag(name = "Admin")
+@Path("/admin")
+@ApplicationScoped
+@RolesAllowed("admin")
+@Produces(MediaType.APPLICATION_JSON)
+public class AdminService {
+    @Inject
+    QueryStats queryStats;
+
+    @Inject
+    ZipCodeLocator zipCodeLocator;
+
+    @Inject
+    MongoDatabase db;
+
+    @GET
+    @Path("/query-stats")
+    @Operation(summary = "Latency of every query shape seen since startup, the most total time first")
+    public Response queryStats() {
+        JsonArrayBuilder shapes = Json.createArrayBuilder();
+
+        for (QueryStats.ShapeStats stats : queryStats.getShapes()) {
+            LatencyHistogram latency = stats.getLatency();
+            JsonObjectBuilder shape = Json.createObjectBuilder()
+                    .add("shape", stats.getShape())
+                    .add("count", latency.getCount())
+                    .add("slow", stats.getSlowCount())
+                    .add("failed", stats.getFailedCount())
+                    .add("totalMs", latency.getTotalMillis())
+                    .add("meanMs", latency.getMeanMillis())
+                    .add("p50Ms", latency.percentileMillis(50))
+                    .add("p95Ms", latency.percentileMillis(95))
+                    .add("p99Ms", latency.percentileMillis(99))
+                    .add("maxMs", latency.getMaxMillis());
+            if (stats.getPlan() != null) {
+                shape.add("plan", stats.getPlan());
+            }
+            shapes.add(shape);
+        }
+
+        return Response.ok(Json.createObjectBuilder()
+                .add("slowQueryThresholdMs", queryStats.getSlowQueryThresholdMs())
+                .add("shapes", shapes)
+                .build().toString()).build();
+    }
+
+    @DELETE
+    @Path("/query-stats")
+    @Operation(summary = "Starts the query stats over, e.g. after adding an index")
+    public Response resetQueryStats() {
+        queryStats.reset();
+        return Response.ok().build();
+    }
+
+    @GET
+    @Path("/geocode-stats")
+    @Operation(summary = "Where the zip code lookups since startup were answered from, and how long the slow ones took")
+    public Response geocodeStats() {
+        return Response.ok(Json.createObjectBuilder()
+                .add("centroids", zipCodeLocator.getCentroidCount())
+                .add("cached", zipCodeLocator.getCacheSize())
+                .add("tableHits", zipCodeLocator.getTableHits())
+                .add("cacheHits", zipCodeLocator.getCacheHits())
+                .add("storeHits", zipCodeLocator.getStoreHits())
+                .add("misses", zipCodeLocator.getMisses())
+                .add("store", latency(zipCodeLocator.getStoreLatency()))
+                .add("remote", latency(zipCodeLocator.getRemoteLatency()))
+                .build().toString()).build();
+    }
+
+    @GET
+    @Path("/migrations")
+    @Operation(summary = "How far the data migrations have got")
+    public Response migrations() {
+        JsonArrayBuilder migrations = Json.createArrayBuilder();
+
+        for (Document migration : ShelterPositionMigration.migrations(db).find()) {
+            migrations.add(Json.createReader(new StringReader(migration.toJson())).readObject());
+        }
+
+        return Response.ok(migrations.build().toString()).build();
+    }
+
+    private static JsonObjectBuilder latency(LatencyHistogram latency) {
+        return Json.createObjectBuilder()
+                .add("count", latency.getCount())
+                .add("meanMs", latency.getMeanMillis())
+                .add("p95Ms", latency.percentileMillis(95))
+                .add("maxMs", latency.getMaxMillis());
+    }
+}
@@ -1,6 +1,6 @@
 package oz.rest.services;
 
-import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -10,13 +10,11 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.InsertOneResult;
-import com.mongodb.client.result.UpdateResult;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.json.JsonArray;
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 // import jakarta.ws.rs.QueryParam;
@@ -26,6 +24,7 @@ import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
@@ -41,6 +40,10 @@ import static com.mongodb.client.model.Filters.and;
 @Path("/adopter")
 @ApplicationScoped
 public class AdopterService extends AbstractService<Adopter> {
+    public AdopterService() {
+        super("Adopters", Adopter.class, RawJsonView.ADOPTERS);
+    }
+
     @Override
     @POST
     public Response add(Adopter newEntry) {
@@ -53,13 +56,16 @@ public class AdopterService extends AbstractService<Adopter> {
                     .build();
         }
 
-        MongoCollection<Adopter> adopters = db.getCollection("Adopters", Adopter.class);
+        MongoCollection<Adopter> adopters = collection();
+
+        stampInsert(newEntry);
 
         InsertOneResult res = adopters.insertOne(newEntry);
 
         ObjectId oid = res.getInsertedId().asObjectId().getValue();
 
         newEntry.setId(oid);
+        fireWrite(ModelWrite.Kind.INSERT, oid, newEntry);
 
         return Response
                 .status(Response.Status.OK)
@@ -67,17 +73,24 @@ public class AdopterService extends AbstractService<Adopter> {
                 .build();
     }
 
+    @Override
+    public Response retrieve(String id) {
+        return retrieve(id, null, null);
+    }
+
     @GET
     @APIResponses({
             @APIResponse(responseCode = "200", description = "Successfully found user."),
+            @APIResponse(responseCode = "304", description = "The client's copy is still current."),
             @APIResponse(responseCode = "400", description = "Invalid name or configuration."),
             @APIResponse(responseCode = "404", description = "User not found.")
 
     })
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    @Override
-    public Response retrieve(@PathParam("id") String id) {
+    public Response retrieve(@PathParam("id") String id,
+            @Parameter(description = "The ETag of the copy the client has, to get a 304 if it's still current.") @HeaderParam("If-None-Match") String ifNoneMatch,
+            @HeaderParam("If-Modified-Since") String ifModifiedSince) {
         ObjectId oid;
 
         try {
@@ -89,24 +102,40 @@ public class AdopterService extends AbstractService<Adopter> {
                     .build();
         }
 
-        MongoCollection<Adopter> adopters = db.getCollection("Adopters", Adopter.class);
+        // a client polling for changes only needs the version, which the index has
+        Response notModified = notModified(oid, ifNoneMatch, ifModifiedSince);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        // read only, so skip decoding into an Adopter and write the stored bytes out as json
+        MongoCollection<RawBsonDocument> adopters = rawCollection();
 
         var adopter = adopters.find(eq("_id", oid)).first();
 
         if (adopter == null) {
             return Response.status(404).build();
         } else {
-            return Response.ok(adopter.toJson()).build();
+            return withValidators(Response.ok(RawJsonView.ADOPTERS.toJson(adopter)), adopter).build();
         }
     }
 
+    // kept for callers that don't look up by ids
+    public Response find(String name, String emailAddress, Integer pageSize, Integer pageNumber) {
+        return find(name, emailAddress, pageSize, pageNumber, null);
+    }
+
     @Produces(MediaType.APPLICATION_JSON)
     @GET
     public Response find(@QueryParam(value = "name") String name,
             @QueryParam(value = "email_address") String emailAddress, @QueryParam(value = "page_size") Integer pageSize,
-            @QueryParam(value = "page_number") Integer pageNumber) {
-        MongoCollection<Adopter> adoptersCollection = db.getCollection("Adopters",
-                Adopter.class);
+            @QueryParam(value = "page_number") Integer pageNumber,
+            @Parameter(description = "Comma separated ids to retrieve at once instead of searching, see also POST /batch.") @QueryParam(value = "ids") String ids) {
+        if (ids != null) {
+            return retrieveMany(splitIds(ids));
+        }
+
+        MongoCollection<Adopter> adoptersCollection = collection();
 
         ArrayList<Bson> filters = new ArrayList<Bson>();
         if (name != null) {
@@ -129,20 +158,14 @@ public class AdopterService extends AbstractService<Adopter> {
                 ? adoptersCollection.find(and(filters)).skip(pageSize * pageNumber).limit(pageSize)
                 : adoptersCollection.find().skip(pageSize * pageNumber).limit(pageSize);
 
-        Jsonb jsonb = JsonbBuilder.create();
-
-        var adopters = new ArrayList<Document>();
-        for (Adopter foundAdopter : foundAdopters) {
-            var doc = Document.parse(jsonb.toJson(foundAdopter));
-            doc.replace("id", foundAdopter.getId().toString());
-            adopters.add(doc);
-        }
+        MongoCursor<Adopter> adopters = foundAdopters.iterator();
 
-        if (adopters.size() == 0) {
+        if (!adopters.hasNext()) {
+            adopters.close();
             return Response.status(404).build();
         }
 
-        return Response.ok(jsonb.toJson(adopters)).build();
+        return Response.ok(new JsonArrayStreamingOutput<>(adopters)).build();
     }
 
     @PUT
@@ -176,24 +199,21 @@ public class AdopterService extends AbstractService<Adopter> {
                     .entity(vio.toString())
                     .build();
         }
-        MongoCollection<Adopter> adoptersCollection = db.getCollection("Adopters",
-                Adopter.class);
-
-        UpdateResult updateResult = adoptersCollection
-                .replaceOne(eq("_id", oid), updatedEntry);
+        // the version is bumped as part of the replace, so answer with what was stored
+        Adopter updated = replace(oid, updatedEntry);
 
-        if (updateResult.getMatchedCount() == 0) {
+        if (updated == null) {
             return Response
                     .status(Response.Status.NOT_FOUND)
                     .entity("[\"_id was not found!\"]")
                     .build();
         }
 
-        updatedEntry.setId(oid);
+        fireWrite(ModelWrite.Kind.UPDATE, oid, updated);
 
         return Response
                 .status(Response.Status.OK)
-                .entity(updatedEntry.toJson())
+                .entity(updated.toJson())
                 .build();
     }
 
@@ -214,8 +234,7 @@ public class AdopterService extends AbstractService<Adopter> {
                     .build();
         }
 
-        MongoCollection<Adopter> adopters = db.getCollection("Adopters",
-                Adopter.class);
+        MongoCollection<Adopter> adopters = collection();
 
         var removedAdopter = adopters
                 .findOneAndDelete(eq("_id", oid));
@@ -223,6 +242,7 @@ public class AdopterService extends AbstractService<Adopter> {
         if (removedAdopter == null) {
             return Response.status(400).build();
         } else {
+            fireWrite(ModelWrite.Kind.DELETE, oid, removedAdopter);
             return Response.ok(removedAdopter.toJson()).build();
         }
     }
@@ -236,8 +256,7 @@ public class AdopterService extends AbstractService<Adopter> {
             @APIResponse(responseCode = "400", description = "Login failed"),
             @APIResponse(responseCode = "200", description = "Login was successful") })
     public Response login(Adopter entry) {
-        MongoCollection<Adopter> adopters = db.getCollection("Adopters",
-                Adopter.class);
+        MongoCollection<Adopter> adopters = collection();
 
         // TODO: encrypt passwords at rest, java.security MessageDigest looks promising
 
@@ -0,0 +1,91 @@
+package oz.rest.services;
+
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
+import java.util.List;
+
+import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.json.Json;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import oz.rest.search.Autocomplete;
+import oz.rest.search.WeightedTrie;
+
+@Tag(name = "Autocomplete")
+@Path("/autocomplete")
+@ApplicationScoped
+@Produces(MediaType.APPLICATION_JSON)
+public class AutocompleteService {
+    @Inject
+    Autocomplete autocomplete;
+
+    @GET
+    @Path("/{field}")
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "[{\"value\": \"Labrador\", \"weight\": 12}, ...], the most common first"),
+            @APIResponse(responseCode = "400", description = "Unknown field or invalid limit"),
+            @APIResponse(responseCode = "404", description = "Suggestions aren't turned on, see autocomplete.enabled")
+    })
+    @Operation(summary = "Suggest pet breeds, pet names or shelter names starting with what has been typed so far")
+    public Response complete(
+            @Parameter(description = "breed, pet_name or shelter_name") @PathParam("field") String field,
+            @QueryParam("prefix") String prefix,
+            @Parameter(description = "At most 10, the default.") @QueryParam("limit") Integer limit) {
+        Autocomplete.Field suggested = Autocomplete.Field.of(field);
+
+        if (suggested == null) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Suggestions are only for breed, pet_name or shelter_name!\"]")
+                    .build();
+        }
+
+        if (limit == null) {
+            limit = WeightedTrie.MAX_SUGGESTIONS;
+        }
+
+        if (limit < 1 || limit > WeightedTrie.MAX_SUGGESTIONS) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Limit must be between 1 and " + WeightedTrie.MAX_SUGGESTIONS + "!\"]")
+                    .build();
+        }
+
+        List<WeightedTrie.Suggestion> completed = autocomplete.complete(suggested, prefix == null ? "" : prefix,
+                limit);
+        if (completed == null) {
+            return Response
+                    .status(Response.Status.NOT_FOUND)
+                    .entity("[\"Suggestions are not turned on!\"]")
+                    .build();
+        }
+
+        JsonArrayBuilder suggestions = Json.createArrayBuilder();
+        for (WeightedTrie.Suggestion suggestion : completed) {
+            suggestions.add(Json.createObjectBuilder()
+                    .add("value", suggestion.value())
+                    .add("weight", suggestion.weight()));
+        }
+
+        return Response.ok(suggestions.build().toString()).build();
+    }
+}
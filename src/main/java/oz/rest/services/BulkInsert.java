@@ -0,0 +1,291 @@
+package oz.rest.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObjectBuilder;
+import jakarta.json.bind.JsonbException;
+import jakarta.ws.rs.core.StreamingOutput;
+import oz.rest.models.AbstractModel;
+import oz.rest.models.ModelJson;
+
+/**
+ * Inserts newline delimited json, one model per line. Lines are read and
+ * validated one at a time and inserted with an unordered insertMany every
+ * {@link #CHUNK_SIZE} lines, or sooner once the chunk holds
+ * {@link #CHUNK_CHARACTERS}, so only one chunk is ever in memory however big
+ * the upload is. Each line is bound on its own with JSON-B rather than with
+ * one JSON-P parser over the whole upload, since a parser can't find its way
+ * back after a malformed line and the rest of the upload would be lost.
+ *
+ * The report is newline delimited json as well, one line per input line in
+ * the same order, either {"line": 3, "id": "..."} or {"line": 3, "errors":
+ * [...]}, and a last line with the totals, {"inserted": n, "failed": m}.
+ * Blank lines are skipped. It is written to a temporary file while the upload
+ * is inserted, so the status can still say whether the database failed part
+ * way through before any of it is sent.
+ */
+public class BulkInsert<T extends AbstractModel> {
+    private static final Logger logger = LoggerFactory.getLogger(BulkInsert.class);
+
+    public static final String NDJSON = "application/x-ndjson";
+
+    static final int CHUNK_SIZE = 1000;
+
+    // most lines are small, but pets carry their images, so a chunk of those
+    // is inserted before it's a thousand long
+    static final long CHUNK_CHARACTERS = 16L * 1024 * 1024;
+
+    // as long as the json of a document mongo would still take, longer lines
+    // are reported as errors instead of being read into memory
+    static final int MAX_LINE_LENGTH = 16 * 1024 * 1024;
+
+    private final InputStream input;
+    private final ModelJson<T> json;
+    private final MongoCollection<T> collection;
+    private final Function<T, JsonArray> violations;
+    private final Consumer<T> inserted;
+
+    private int insertedCount;
+    private int failedCount;
+
+    // set when the database fails, nothing after that is read
+    private String error;
+
+    // one line of the upload, which is either a model to insert or already failed
+    private static final class Line<T> {
+        final int number;
+        final T model;
+        JsonArray errors;
+
+        Line(int number, T model, JsonArray errors) {
+            this.number = number;
+            this.model = model;
+            this.errors = errors;
+        }
+    }
+
+    /**
+     * @param violations the validation messages for a model, empty if it's valid
+     * @param inserted   called with every model once it is inserted
+     */
+    public BulkInsert(InputStream input, Class<T> type, MongoCollection<T> collection,
+            Function<T, JsonArray> violations, Consumer<T> inserted) {
+        this.input = input;
+        this.json = ModelJson.of(type);
+        this.collection = collection;
+        this.violations = violations;
+        this.inserted = inserted;
+    }
+
+    /**
+     * Reads and inserts the whole upload. The report it returns deletes its
+     * temporary file once it has been written out.
+     */
+    public StreamingOutput run() throws IOException {
+        Path file = Files.createTempFile("bulk-insert", ".ndjson");
+
+        try (Writer report = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            insertAll(report);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+
+        return output -> {
+            try {
+                Files.copy(file, output);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+    }
+
+    /**
+     * Why the upload stopped part way, or null if all of it was read.
+     */
+    public String error() {
+        return error;
+    }
+
+    private void insertAll(Writer report) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        List<Line<T>> chunk = new ArrayList<>();
+        long chunkCharacters = 0;
+        int number = 0;
+
+        StringBuilder text = new StringBuilder();
+        while (error == null) {
+            text.setLength(0);
+            int read = readLine(reader, text);
+            if (read == -1) {
+                break;
+            }
+            number++;
+
+            if (read > MAX_LINE_LENGTH) {
+                chunk.add(new Line<>(number, null, errors("Line is longer than " + MAX_LINE_LENGTH + " characters!")));
+            } else if (!text.toString().isBlank()) {
+                chunk.add(parse(number, text.toString()));
+                chunkCharacters += read;
+            }
+
+            if (chunk.size() == CHUNK_SIZE || chunkCharacters >= CHUNK_CHARACTERS) {
+                flush(chunk, report);
+                chunkCharacters = 0;
+            }
+        }
+        if (error == null) {
+            flush(chunk, report);
+        }
+
+        JsonObjectBuilder totals = Json.createObjectBuilder()
+                .add("inserted", insertedCount)
+                .add("failed", failedCount);
+        if (error != null) {
+            totals.add("error", error);
+        }
+        report.write(totals.build().toString());
+        report.write('\n');
+    }
+
+    /**
+     * Reads up to the next newline, keeping at most {@link #MAX_LINE_LENGTH}
+     * characters of it.
+     *
+     * @return the length of the whole line, or -1 at the end of the input
+     */
+    static int readLine(Reader reader, StringBuilder line) throws IOException {
+        int length = 0;
+        int c;
+
+        while ((c = reader.read()) != -1 && c != '\n') {
+            if (length++ < MAX_LINE_LENGTH) {
+                line.append((char) c);
+            }
+        }
+
+        if (c == -1 && length == 0) {
+            return -1;
+        }
+
+        // windows line endings
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+            line.setLength(line.length() - 1);
+        }
+        return length;
+    }
+
+    private Line<T> parse(int number, String text) {
+        T model;
+
+        try {
+            model = json.fromJson(text);
+        } catch (JsonbException e) {
+            return new Line<>(number, null, errors("Invalid json!"));
+        }
+
+        if (model == null) {
+            return new Line<>(number, null, errors("Invalid json!"));
+        }
+
+        JsonArray problems = violations.apply(model);
+        if (!problems.isEmpty()) {
+            return new Line<>(number, null, problems);
+        }
+
+        // ids are always generated and the version starts over, like add() does
+        model.setId(null);
+        AbstractService.stampInsert(model);
+        return new Line<>(number, model, null);
+    }
+
+    private void flush(List<Line<T>> chunk, Writer report) throws IOException {
+        List<T> models = new ArrayList<>();
+        for (Line<T> line : chunk) {
+            if (line.model != null) {
+                models.add(line.model);
+            }
+        }
+
+        if (!models.isEmpty()) {
+            Map<Integer, BulkWriteError> failed = new HashMap<>();
+            boolean unknown = false;
+
+            try {
+                collection.insertMany(models, new InsertManyOptions().ordered(false));
+            } catch (MongoBulkWriteException e) {
+                // unordered, so everything else in the chunk was still inserted
+                for (BulkWriteError writeError : e.getWriteErrors()) {
+                    failed.put(writeError.getIndex(), writeError);
+                }
+            } catch (MongoException e) {
+                // any of the chunk may or may not have made it, stop here
+                logger.error("Bulk insert failed part way through", e);
+                error = "The database failed, stopped after line " + chunk.get(chunk.size() - 1).number + "!";
+                unknown = true;
+            }
+
+            int index = 0;
+            for (Line<T> line : chunk) {
+                if (line.model == null) {
+                    continue;
+                }
+                BulkWriteError writeError = failed.get(index++);
+                if (unknown) {
+                    line.errors = errors("May not have been inserted, the database failed!");
+                } else if (writeError != null) {
+                    line.errors = errors(writeError.getCategory() == ErrorCategory.DUPLICATE_KEY
+                            ? "Duplicate key!"
+                            : writeError.getMessage());
+                }
+            }
+        }
+
+        for (Line<T> line : chunk) {
+            JsonObjectBuilder result = Json.createObjectBuilder().add("line", line.number);
+            if (line.errors == null) {
+                result.add("id", line.model.getId().toHexString());
+                insertedCount++;
+                inserted.accept(line.model);
+            } else {
+                result.add("errors", line.errors);
+                failedCount++;
+            }
+            report.write(result.build().toString());
+            report.write('\n');
+        }
+
+        chunk.clear();
+    }
+
+    private static JsonArray errors(String message) {
+        return Json.createArrayBuilder().add(message).build();
+    }
+}
@@ -1,12 +1,10 @@
 package oz.rest.services;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.util.Scanner;
 
+import oz.rest.geo.MapboxGeocoder;
+
 public class GeoEncodingTest {
 
     public static void main(String[] args) {
@@ -26,25 +24,13 @@ public class GeoEncodingTest {
         }
     }
 
+    // the token comes from the environment now, the service uses ZipCodeLocator
     public static float[] getZipCodeCoords(String zipCode) throws IOException {
-        String accessToken = "pk.eyJ1IjoiaGpyb3NlMjkiLCJhIjoiY2x1MGFmbzNmMDJxYTJrbnAyY3J6MWN1NiJ9.T_K    7aTjSSiqtAIeRbL5Msw";
-        URL url = new URL("https://api.mapbox.com/geocoding/v5/mapbox.places/"
-                + zipCode
-                + ".json?access_token=" + accessToken);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-
-        BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        StringBuilder response = new StringBuilder();
-        String line;
-        line = reader.readLine();
-        int ind = line.indexOf("coordinates\":[");
-        String coordString = line.substring(ind + 14, ind + 35);
-        coordString = coordString.substring(0, coordString.indexOf(']'));
-        float[] coords = new float[2];
-        coords[1] = Float.parseFloat(coordString.substring(0, coordString.indexOf(',')));
-        coords[0] = Float.parseFloat(coordString.substring(coordString.indexOf(',') + 1));
-        return coords;
+        String accessToken = System.getenv("GEO_MAPBOX_TOKEN");
+        if (accessToken == null) {
+            throw new IOException("GEO_MAPBOX_TOKEN isn't set");
+        }
+        return MapboxGeocoder.coordinates(zipCode, accessToken);
     }
 
     public static float distance(float[] coords, float[] coords2) {
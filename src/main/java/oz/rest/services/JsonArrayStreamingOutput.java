@@ -0,0 +1,59 @@
+package oz.rest.services;
+
+import java.io.BufferedWriter;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import com.mongodb.client.MongoCursor;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import oz.rest.models.AbstractModel;
+import oz.rest.models.ModelJson;
+
+/**
+ * Writes the documents of a mongo cursor as a json array straight to the
+ * response stream, one document at a time, so nothing is buffered besides the
+ * cursor's current batch. The cursor is closed once the array is written.
+ */
+public class JsonArrayStreamingOutput<T extends AbstractModel> implements StreamingOutput {
+    private final MongoCursor<T> cursor;
+
+    public JsonArrayStreamingOutput(MongoCursor<T> cursor) {
+        this.cursor = cursor;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        Writer element = elementWriter(writer);
+
+        try (cursor) {
+            writer.write('[');
+            boolean first = true;
+            while (cursor.hasNext()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                T next = cursor.next();
+                ModelJson.of(next).toJson(next, element);
+                first = false;
+            }
+            writer.write(']');
+            writer.flush();
+        }
+    }
+
+    // json-b closes whatever writer it is handed (after writing everything to it),
+    // which would end the response after the first element
+    static Writer elementWriter(Writer writer) {
+        return new FilterWriter(writer) {
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
@@ -0,0 +1,67 @@
+package oz.rest.services;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import com.mongodb.client.MongoCursor;
+
+import jakarta.ws.rs.core.StreamingOutput;
+import oz.rest.models.AbstractModel;
+import oz.rest.models.ModelJson;
+
+/**
+ * Streams one keyset page as {"items": [...], "next": "token"}. The cursor is
+ * expected to be limited to one more document than the page size; if that extra
+ * document shows up it is not written, but it means there is another page, so
+ * a token pointing after the last written document is added. Otherwise "next"
+ * is null.
+ */
+public class JsonPageStreamingOutput<T extends AbstractModel> implements StreamingOutput {
+    private final MongoCursor<T> cursor;
+    private final int pageSize;
+    private final Function<T, PageToken> tokenAfter;
+
+    public JsonPageStreamingOutput(MongoCursor<T> cursor, int pageSize, Function<T, PageToken> tokenAfter) {
+        this.cursor = cursor;
+        this.pageSize = pageSize;
+        this.tokenAfter = tokenAfter;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        Writer element = JsonArrayStreamingOutput.elementWriter(writer);
+
+        T last = null;
+        boolean hasMore = false;
+
+        try (cursor) {
+            writer.write("{\"items\":[");
+            int written = 0;
+            while (cursor.hasNext()) {
+                T next = cursor.next();
+                if (written == pageSize) {
+                    hasMore = true;
+                    break;
+                }
+                if (written > 0) {
+                    writer.write(',');
+                }
+                ModelJson.of(next).toJson(next, element);
+                last = next;
+                written++;
+            }
+        }
+
+        // the token is url-safe base64, nothing to escape
+        writer.write("],\"next\":");
+        writer.write(hasMore ? "\"" + tokenAfter.apply(last).encode() + "\"" : "null");
+        writer.write('}');
+        writer.flush();
+    }
+}
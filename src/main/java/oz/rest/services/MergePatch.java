@@ -0,0 +1,149 @@
+package oz.rest.services;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+import org.bson.codecs.pojo.annotations.BsonProperty;
+import org.bson.conversions.Bson;
+import org.eclipse.microprofile.openapi.annotations.media.Schema;
+
+import com.mongodb.client.model.Updates;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonArrayBuilder;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonValue;
+import jakarta.json.bind.JsonbException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import oz.rest.models.ModelJson;
+
+/**
+ * Turns a json merge patch (RFC 7396) into one mongo update: every member set
+ * to a value becomes a $set of its stored field and every null an $unset, and
+ * nested objects are patched field by field ("location.city"). Only the fields
+ * in the patch are validated, each with the constraints of its own property,
+ * and fields marked {@code @Schema(readOnly = true)} can't be patched.
+ */
+final class MergePatch {
+    public static final String MEDIA_TYPE = "application/merge-patch+json";
+
+    private final List<Bson> updates = new ArrayList<>();
+    private final JsonArrayBuilder errors = Json.createArrayBuilder();
+    private boolean valid = true;
+
+    private final Validator validator;
+    // lets a service adjust a value before it's stored, e.g. lowercase emails
+    private final BiFunction<String, Object, Object> adjust;
+
+    private MergePatch(Validator validator, BiFunction<String, Object, Object> adjust) {
+        this.validator = validator;
+        this.adjust = adjust;
+    }
+
+    /**
+     * @param adjust called with the property path and value of every member set
+     *               to a value, returns the value to store
+     */
+    static MergePatch of(Class<?> type, JsonObject patch, Validator validator,
+            BiFunction<String, Object, Object> adjust) {
+        MergePatch merge = new MergePatch(validator, adjust);
+        merge.add(type, "", "", patch);
+        return merge;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    JsonArray errors() {
+        return errors.build();
+    }
+
+    // null if the patch doesn't change anything
+    Bson update() {
+        return updates.isEmpty() ? null : Updates.combine(updates);
+    }
+
+    private void error(String message) {
+        errors.add(message);
+        valid = false;
+    }
+
+    private void add(Class<?> type, String propertyPrefix, String storedPrefix, JsonObject patch) {
+        for (Map.Entry<String, JsonValue> member : patch.entrySet()) {
+            String property = member.getKey();
+            JsonValue value = member.getValue();
+
+            Field field = field(type, property);
+            if (field == null) {
+                error("Unknown field " + propertyPrefix + property + "!");
+                continue;
+            }
+
+            // the id, version and anything else the services set themselves
+            Schema schema = field.getAnnotation(Schema.class);
+            if (schema != null && schema.readOnly()) {
+                error("The " + propertyPrefix + property + " can't be changed!");
+                continue;
+            }
+
+            BsonProperty renamed = field.getAnnotation(BsonProperty.class);
+            String stored = storedPrefix + (renamed == null ? property : renamed.value());
+
+            if (value.getValueType() == JsonValue.ValueType.NULL) {
+                validate(type, propertyPrefix, property, null);
+                updates.add(Updates.unset(stored));
+            } else if (value.getValueType() == JsonValue.ValueType.OBJECT && isNested(field.getType())) {
+                add(field.getType(), propertyPrefix + property + ".", stored + ".", value.asJsonObject());
+            } else {
+                Object bound;
+                try {
+                    bound = ModelJson.fromJson(value.toString(), field.getGenericType());
+                } catch (JsonbException e) {
+                    error("Invalid value for " + propertyPrefix + property + "!");
+                    continue;
+                }
+
+                bound = adjust.apply(propertyPrefix + property, bound);
+                if (validate(type, propertyPrefix, property, bound)) {
+                    updates.add(Updates.set(stored, bound));
+                }
+            }
+        }
+    }
+
+    private <V> boolean validate(Class<V> type, String propertyPrefix, String property, Object value) {
+        Set<ConstraintViolation<V>> violations = validator.validateValue(type, property, value);
+
+        for (ConstraintViolation<V> violation : violations) {
+            error(violation.getMessage());
+        }
+        return violations.isEmpty();
+    }
+
+    // objects of these types are replaced as a whole, anything else is patched into
+    private static boolean isNested(Class<?> type) {
+        return !(type.isPrimitive() || type.getName().startsWith("java.") || Collection.class.isAssignableFrom(type)
+                || Map.class.isAssignableFrom(type) || type.isArray());
+    }
+
+    private static Field field(Class<?> type, String name) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                return Modifier.isStatic(field.getModifiers()) ? null : field;
+            } catch (NoSuchFieldException e) {
+                // look in the superclass
+            }
+        }
+        return null;
+    }
+}
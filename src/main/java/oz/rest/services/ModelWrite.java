@@ -0,0 +1,22 @@
+package oz.rest.services;
+
+import org.bson.types.ObjectId;
+
+import oz.rest.models.AbstractModel;
+
+/**
+ * Fired after a service has written a model, so anything kept in memory about
+ * the collection (caches, indexes) can follow along. For inserts and updates
+ * the model is what was written, for deletes what was removed. INVALIDATE
+ * means any number of documents may have changed at once, and has no id or
+ * model.
+ */
+public record ModelWrite(Kind kind, Class<? extends AbstractModel> type, ObjectId id, AbstractModel model) {
+    public enum Kind {
+        INSERT, UPDATE, DELETE, INVALIDATE
+    }
+
+    public boolean isFor(Class<? extends AbstractModel> type) {
+        return this.type == type;
+    }
+}
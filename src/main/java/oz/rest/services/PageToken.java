@@ -0,0 +1,118 @@
+package oz.rest.services;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gt;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Filters.or;
+
+import java.util.Base64;
+import java.util.Objects;
+
+import org.bson.BsonDocument;
+import org.bson.BsonNull;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.ByteBuf;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import com.mongodb.client.model.Sorts;
+
+/**
+ * Opaque "next" token for keyset pagination. It remembers where the last page
+ * ended, the sort key and _id of its last document, and turns that into a range
+ * filter, so the next page is an index seek instead of skipping every earlier
+ * document. Pages are ordered by the sort key and then by _id, which breaks ties.
+ */
+public final class PageToken {
+    private static final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder decoder = Base64.getUrlDecoder();
+
+    // null when the pages are only ordered by _id
+    private final String sortKey;
+    private final BsonValue lastValue;
+    private final ObjectId lastId;
+
+    private PageToken(String sortKey, BsonValue lastValue, ObjectId lastId) {
+        this.sortKey = sortKey;
+        this.lastValue = lastValue;
+        this.lastId = lastId;
+    }
+
+    public static PageToken after(String sortKey, BsonValue lastValue, ObjectId lastId) {
+        return new PageToken(sortKey, lastValue == null ? BsonNull.VALUE : lastValue, lastId);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token was not made by
+     *                                  {@link #encode()}
+     */
+    public static PageToken decode(String token) {
+        try {
+            BsonDocument document = new RawBsonDocument(decoder.decode(token));
+            String sortKey = document.containsKey("s") ? document.getString("s").getValue() : null;
+            return new PageToken(sortKey, document.get("v", BsonNull.VALUE), document.getObjectId("i").getValue());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+
+    public String encode() {
+        BsonDocument document = new BsonDocument();
+        if (sortKey != null) {
+            document.put("s", new BsonString(sortKey));
+            document.put("v", lastValue);
+        }
+        document.put("i", new BsonObjectId(lastId));
+
+        ByteBuf raw = new RawBsonDocument(document, new BsonDocumentCodec()).getByteBuffer();
+        byte[] bytes = new byte[raw.remaining()];
+        raw.get(bytes);
+        return encoder.encodeToString(bytes);
+    }
+
+    /**
+     * Where the next page starts, for orders that can't be turned into a range
+     * filter, like text relevance, whose tokens store an offset as their value.
+     *
+     * @throws IllegalArgumentException if the token doesn't hold an offset
+     */
+    public int offset() {
+        if (!lastValue.isInt32() || lastValue.asInt32().getValue() < 0) {
+            throw new IllegalArgumentException("The page token has no offset");
+        }
+        return lastValue.asInt32().getValue();
+    }
+
+    public ObjectId lastId() {
+        return lastId;
+    }
+
+    public boolean isSortedBy(String sortKey) {
+        return Objects.equals(this.sortKey, sortKey);
+    }
+
+    /**
+     * Everything that sorts after the last document of the previous page.
+     */
+    public Bson filter() {
+        if (sortKey == null) {
+            return gt("_id", lastId);
+        }
+
+        // missing and null values sort before everything else
+        if (lastValue.isNull()) {
+            return or(and(eq(sortKey, null), gt("_id", lastId)), ne(sortKey, null));
+        }
+
+        return or(gt(sortKey, lastValue), and(eq(sortKey, lastValue), gt("_id", lastId)));
+    }
+
+    public static Bson sort(String sortKey) {
+        return sortKey == null ? Sorts.ascending("_id") : Sorts.ascending(sortKey, "_id");
+    }
+}
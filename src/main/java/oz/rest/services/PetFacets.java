@@ -0,0 +1,126 @@
+package oz.rest.services;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.BucketOptions;
+import com.mongodb.client.model.Facet;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import oz.rest.models.Pet;
+
+/**
+ * Counts the pets matching a filter per type, breed, size, sex and age bucket,
+ * all with one $facet aggregation. The results are cached by the filter's
+ * {@link PetFilter#cacheKey()} until any pet is written, since a single write
+ * can change the counts of any number of filters.
+ */
+@ApplicationScoped
+public class PetFacets {
+    // where each age bucket starts, the last one is everything 8 and up
+    static final List<Integer> AGE_BOUNDARIES = List.of(0, 1, 3, 8, 1000);
+
+    private static final int MAX_CACHED = 1000;
+
+    private static final RawJsonView view = new RawJsonView(Map.of(), Set.of());
+
+    @Inject
+    MongoDatabase db;
+
+    private volatile MongoCollection<RawBsonDocument> pets;
+
+    // bumped on every write, so a count that was started before a write isn't
+    // cached after it
+    private long generation;
+
+    private final Map<String, String> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * The counts as {"type": [{"value": "Dog", "count": 12}, ...], ..., "age":
+     * [{"from": 0, "count": 3}, ...]}, most common values first. Pets without an
+     * age are counted under "from": "unknown", pets without a type, breed, size
+     * or sex aren't counted in that facet.
+     */
+    public String count(PetFilter filter) {
+        String key = filter.cacheKey();
+        long started;
+
+        synchronized (cache) {
+            String cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            started = generation;
+        }
+
+        RawBsonDocument counts = pets()
+                .aggregate(pipeline(filter.toBson()))
+                .first();
+        String json = view.toJson(counts);
+
+        synchronized (cache) {
+            if (started == generation) {
+                cache.put(key, json);
+            }
+        }
+
+        return json;
+    }
+
+    private MongoCollection<RawBsonDocument> pets() {
+        if (pets == null) {
+            pets = db.getCollection("Pets", RawBsonDocument.class);
+        }
+        return pets;
+    }
+
+    static List<Bson> pipeline(Bson filter) {
+        return List.of(
+                Aggregates.match(filter),
+                Aggregates.facet(
+                        countBy("type"),
+                        countBy("breed"),
+                        countBy("size"),
+                        countBy("sex"),
+                        new Facet("age",
+                                Aggregates.bucket("$age", AGE_BOUNDARIES,
+                                        new BucketOptions().defaultBucket("unknown")),
+                                Aggregates.project(Projections.fields(Projections.excludeId(),
+                                        Projections.computed("from", "$_id"), Projections.include("count"))))));
+    }
+
+    private static Facet countBy(String field) {
+        // a null value would be left out of the json, leaving a count of nothing
+        return new Facet(field,
+                Aggregates.match(Filters.ne(field, null)),
+                Aggregates.sortByCount("$" + field),
+                Aggregates.project(Projections.fields(Projections.excludeId(),
+                        Projections.computed("value", "$_id"), Projections.include("count"))));
+    }
+
+    void onWrite(@Observes ModelWrite write) {
+        if (write.isFor(Pet.class)) {
+            synchronized (cache) {
+                generation++;
+                cache.clear();
+            }
+        }
+    }
+}
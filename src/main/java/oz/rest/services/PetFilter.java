@@ -0,0 +1,198 @@
+package oz.rest.services;
+
+import static com.mongodb.client.model.Filters.and;
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.text;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.bson.BsonDocument;
+import org.bson.conversions.Bson;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.model.Filters;
+
+import jakarta.ws.rs.QueryParam;
+
+/**
+ * The attribute filters pets can be searched by, shared by every endpoint that
+ * searches pets so they all understand the same query parameters.
+ */
+public class PetFilter {
+    @QueryParam(value = "name")
+    private String name;
+
+    @QueryParam(value = "current_shelter_id")
+    private String currentShelterId;
+
+    @QueryParam(value = "type")
+    private List<String> type;
+
+    @QueryParam(value = "breed")
+    private String breed;
+
+    @QueryParam(value = "color")
+    private String color;
+
+    @QueryParam(value = "health")
+    private String health;
+
+    @QueryParam(value = "min_age")
+    private Integer minAge;
+
+    @QueryParam(value = "max_age")
+    private Integer maxAge;
+
+    @QueryParam(value = "sex")
+    private String sex;
+
+    @QueryParam(value = "size")
+    private String size;
+
+    // free text, matched against the pets' text index
+    @QueryParam(value = "q")
+    private String q;
+
+    public PetFilter() {
+    }
+
+    public PetFilter(String name, String currentShelterId, List<String> type, String breed, String color,
+            String health, Integer minAge, Integer maxAge, String sex, String size) {
+        this.name = name;
+        this.currentShelterId = currentShelterId;
+        this.type = type;
+        this.breed = breed;
+        this.color = color;
+        this.health = health;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.sex = sex;
+        this.size = size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getCurrentShelterId() {
+        return currentShelterId;
+    }
+
+    public List<String> getType() {
+        return type;
+    }
+
+    public String getBreed() {
+        return breed;
+    }
+
+    public String getColor() {
+        return color;
+    }
+
+    public String getHealth() {
+        return health;
+    }
+
+    public Integer getMinAge() {
+        return minAge;
+    }
+
+    public Integer getMaxAge() {
+        return maxAge;
+    }
+
+    public String getSex() {
+        return sex;
+    }
+
+    public String getSize() {
+        return size;
+    }
+
+    public String getQ() {
+        return q;
+    }
+
+    public void setQ(String q) {
+        this.q = q;
+    }
+
+    public boolean hasText() {
+        return q != null && !q.isBlank();
+    }
+
+    public List<Bson> toFilters() {
+        ArrayList<Bson> filters = new ArrayList<Bson>();
+
+        if (hasText()) {
+            filters.add(text(q));
+        }
+
+        if (name != null) {
+            filters.add(eq("name", name));
+        }
+
+        if (currentShelterId != null) {
+            filters.add(eq("currentShelterId", currentShelterId));
+        }
+
+        if (type != null && !type.isEmpty()) {
+            filters.add(in("type", type));
+        }
+
+        if (breed != null) {
+            filters.add(eq("breed", breed));
+        }
+
+        if (color != null) {
+            filters.add(eq("color", color));
+        }
+
+        if (health != null) {
+            filters.add(eq("health", health));
+        }
+
+        if (minAge != null) {
+            filters.add(gte("age", minAge));
+        }
+
+        if (maxAge != null) {
+            filters.add(lte("age", maxAge));
+        }
+
+        if (sex != null) {
+            filters.add(eq("sex", sex));
+        }
+
+        if (size != null) {
+            filters.add(eq("size", size));
+        }
+
+        return filters;
+    }
+
+    public Bson toBson() {
+        List<Bson> filters = toFilters();
+        return filters.isEmpty() ? Filters.empty() : and(filters);
+    }
+
+    /**
+     * The same for every filter that matches the same pets, whatever order the
+     * types were given in, so it can be used to cache results by.
+     */
+    public String cacheKey() {
+        List<String> types = type == null ? null : new ArrayList<>(new TreeSet<>(type));
+        PetFilter normalized = new PetFilter(name, currentShelterId, types, breed, color, health, minAge, maxAge,
+                sex, size);
+        normalized.q = q == null ? null : q.trim().toLowerCase();
+
+        return normalized.toBson().toBsonDocument(BsonDocument.class, MongoClientSettings.getDefaultCodecRegistry())
+                .toJson();
+    }
+}
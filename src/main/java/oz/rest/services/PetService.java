@@ -1,6 +1,10 @@
 package oz.rest.services;
 
-import org.bson.Document;
+import org.bson.BsonInt32;
+import org.bson.BsonNull;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
 import org.eclipse.microprofile.openapi.annotations.Operation;
@@ -10,9 +14,9 @@ import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.json.JsonArray;
-import jakarta.json.bind.Jsonb;
-import jakarta.json.bind.JsonbBuilder;
+import jakarta.ws.rs.BeanParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.Consumes;
@@ -21,31 +25,57 @@ import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
-import oz.rest.models.Shelter;
+import jakarta.ws.rs.core.StreamingOutput;
 
-import static com.mongodb.client.model.Filters.gte;
-import static com.mongodb.client.model.Filters.lte;
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
 import static com.mongodb.client.model.Filters.in;
 // import static com.mongodb.client.model.Filters.and;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import oz.rest.models.Pet;
+import oz.rest.search.PetBitmapIndex;
 
+import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
 import com.mongodb.client.result.InsertOneResult;
-import com.mongodb.client.result.UpdateResult;
+import com.mongodb.client.model.Sorts;
 
 @Tag(name = "Pets")
 @Path("/pet")
 @ApplicationScoped
 public class PetService extends AbstractService<Pet> {
+    // what a keyset page can be sorted by, with how to read the sort key off a pet
+    private static final Map<String, Function<Pet, BsonValue>> sortKeys = Map.of(
+            "name", pet -> pet.getName() == null ? BsonNull.VALUE : new BsonString(pet.getName()),
+            "age", pet -> pet.getAge() == null ? BsonNull.VALUE : new BsonInt32(pet.getAge()));
+
+    // the order text searches come back in, best match first
+    private static final String RELEVANCE = "relevance";
+
+    // the paging parameter that asks for keyset pages from the first one on
+    private static final String KEYSET = "keyset";
+
+    @Inject
+    PetFacets facets;
+
+    @Inject
+    PetBitmapIndex bitmapIndex;
+
+    public PetService() {
+        super("Pets", Pet.class, RawJsonView.PETS);
+    }
+
     @Override
     @POST
     @APIResponses({
@@ -64,14 +94,16 @@ public class PetService extends AbstractService<Pet> {
                     .build();
         }
 
-        MongoCollection<Pet> petCollection = db.getCollection("Pets",
-                Pet.class);
+        MongoCollection<Pet> petCollection = collection();
+
+        stampInsert(newEntry);
 
         InsertOneResult res = petCollection.insertOne(newEntry);
 
         ObjectId oid = res.getInsertedId().asObjectId().getValue();
 
         newEntry.setId(oid);
+        fireWrite(ModelWrite.Kind.INSERT, oid, newEntry);
 
         return Response
                 .status(Response.Status.OK)
@@ -79,11 +111,53 @@ public class PetService extends AbstractService<Pet> {
                 .build();
     }
 
+    @POST
+    @Path("/bulk")
+    @Consumes(BulkInsert.NDJSON)
+    @Produces(BulkInsert.NDJSON)
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "One line per uploaded line, {\"line\": 1, \"id\": \"...\"} or {\"line\": 1, \"errors\": [...]}, then {\"inserted\": n, \"failed\": m}"),
+            @APIResponse(responseCode = "400", description = "The upload couldn't be read"),
+            @APIResponse(responseCode = "503", description = "The database failed part way through. The same report up to where it stopped, with an error in the last line")
+    })
+    @Operation(summary = "Add many pets at once from newline delimited json, one pet per line")
+    public Response addMany(InputStream pets) {
+        BulkInsert<Pet> bulk = new BulkInsert<>(pets, Pet.class, collection(), this::getViolations,
+                pet -> fireWrite(ModelWrite.Kind.INSERT, pet.getId(), pet));
+        StreamingOutput report;
+
+        try {
+            report = bulk.run();
+        } catch (IOException e) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The upload couldn't be read!\"]")
+                    .build();
+        }
+
+        if (bulk.error() != null) {
+            // some of the last chunk may have been inserted without anyone hearing about it
+            fireInvalidate(Pet.class);
+            return Response
+                    .status(Response.Status.SERVICE_UNAVAILABLE)
+                    .entity(report)
+                    .build();
+        }
+
+        return Response.ok(report).build();
+    }
+
+    @Override
+    public Response retrieve(String id) {
+        return retrieve(id, null, null);
+    }
+
     @Path("/{id}")
     @Produces(MediaType.APPLICATION_JSON)
-    @Override
     @GET
-    public Response retrieve(@PathParam("id") String id) {
+    public Response retrieve(@PathParam("id") String id,
+            @Parameter(description = "The ETag of the copy the client has, to get a 304 if it's still current.") @HeaderParam("If-None-Match") String ifNoneMatch,
+            @HeaderParam("If-Modified-Since") String ifModifiedSince) {
         ObjectId oid;
 
         try {
@@ -95,102 +169,191 @@ public class PetService extends AbstractService<Pet> {
                     .build();
         }
 
-        MongoCollection<Pet> pets = db.getCollection("Pets", Pet.class);
+        // a client polling for changes only needs the version, which the index has
+        Response notModified = notModified(oid, ifNoneMatch, ifModifiedSince);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        // read only, so skip decoding into a Pet and write the stored bytes out as json
+        MongoCollection<RawBsonDocument> pets = rawCollection();
         var pet = pets.find(eq("_id", oid)).first();
 
         if (pet == null) {
             return Response.status(404).build();
         }
 
-        return Response.ok(pet.toJson()).build();
+        return withValidators(Response.ok(RawJsonView.PETS.toJson(pet)), pet).build();
+    }
+
+    // kept for callers that pass the filters one at a time
+    public Response find(String name, String currentShelterId, List<String> type, String breed, String color,
+            String health, Integer minAge, Integer maxAge, String sex, String size, Integer pageSize,
+            Integer pageNumber) {
+        return find(new PetFilter(name, currentShelterId, type, breed, color, health, minAge, maxAge, sex, size),
+                null, pageSize, pageNumber, null, null, null);
     }
 
     @Produces(MediaType.APPLICATION_JSON)
     @GET
-    public Response find(@QueryParam(value = "name") String name,
-            @QueryParam(value = "current_shelter_id") String currentShelterId,
-            @QueryParam(value = "type") List<String> type,
-            @QueryParam(value = "breed") String breed,
-            @QueryParam(value = "color") String color,
-            @QueryParam(value = "health") String health,
-            @QueryParam(value = "min_age") Integer minAge,
-            @QueryParam(value = "max_age") Integer maxAge,
-            @QueryParam(value = "sex") String sex,
-            @QueryParam(value = "size") String size,
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "A page of pets. With paging=keyset, next, sort or q this is {\"items\": [...], \"next\": token}, otherwise a plain list."),
+            @APIResponse(responseCode = "400", description = "Invalid sort, page size or next token"),
+            @APIResponse(responseCode = "404", description = "No pets matched the filters")
+    })
+    @Operation(summary = "Search pets, one page at a time")
+    public Response find(@BeanParam PetFilter filter,
+            @Parameter(description = "Order the pages by name, age or relevance instead of by creation. Searches with q are ordered by relevance by default.") @QueryParam(value = "sort") String sort,
             @QueryParam(value = "page_size") Integer pageSize,
-            @QueryParam(value = "page_number") Integer pageNumber) {
-        MongoCollection<Pet> petsCollection = db.getCollection("Pets", Pet.class);
+            @Parameter(description = "Legacy offset paging, every page costs as much as all the pages before it.") @QueryParam(value = "page_number") Integer pageNumber,
+            @Parameter(description = "The next token of the previous page.") @QueryParam(value = "next") String next,
+            @Parameter(description = "Comma separated ids to retrieve at once instead of searching, see also POST /batch.") @QueryParam(value = "ids") String ids,
+            @Parameter(description = "keyset to get the first page as {\"items\": [...], \"next\": token} to page on from.") @QueryParam(value = "paging") String paging) {
+        if (ids != null) {
+            return retrieveMany(splitIds(ids));
+        }
 
-        ArrayList<Bson> filters = new ArrayList<Bson>();
+        MongoCollection<Pet> petsCollection = collection();
 
-        if (name != null) {
-            filters.add(eq("name", name));
+        if (pageSize == null) {
+            pageSize = 1;
         }
 
-        if (currentShelterId != null) {
-            filters.add(eq("currentShelterId", currentShelterId));
-        }
+        // existing clients get the plain list they always have, only the ones
+        // asking for keyset pages or using the newer parameters get the envelope
+        boolean keyset = pageNumber == null
+                && (KEYSET.equals(paging) || next != null || sort != null || filter.hasText());
 
-        if (type != null && !type.isEmpty()) {
-            filters.add(in("type", type));
-        }
+        if (!keyset) {
+            if (pageNumber == null) {
+                pageNumber = 0;
+            }
 
-        if (breed != null) {
-            filters.add(eq("breed", breed));
-        }
+            var foundPets = petsCollection.find(filter.toBson()).skip(pageSize * pageNumber).limit(pageSize);
 
-        if (color != null) {
-            filters.add(eq("color", color));
-        }
+            MongoCursor<Pet> pets = foundPets.iterator();
 
-        if (health != null) {
-            filters.add(eq("health", health));
-        }
+            if (!pets.hasNext()) {
+                pets.close();
+                return Response.status(404).build();
+            }
 
-        if (minAge != null) {
-            filters.add(gte("age", minAge));
+            return Response.ok(new JsonArrayStreamingOutput<>(pets)).build();
         }
 
-        if (maxAge != null) {
-            filters.add(lte("age", maxAge));
+        // text searches are ranked by relevance unless asked otherwise
+        if (sort == null && filter.hasText()) {
+            sort = RELEVANCE;
         }
 
-        if (sex != null) {
-            filters.add(eq("sex", sex));
+        if (sort != null && !sort.equals(RELEVANCE) && !sortKeys.containsKey(sort)) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Pets can only be sorted by name, age or relevance!\"]")
+                    .build();
         }
 
-        if (size != null) {
-            filters.add(eq("size", size));
+        if (RELEVANCE.equals(sort) && !filter.hasText()) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Sorting by relevance needs a q to search for!\"]")
+                    .build();
         }
 
-        if (pageSize == null) {
-            pageSize = 1;
+        if (pageSize < 1) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Page size must be at least 1!\"]")
+                    .build();
         }
 
-        if (pageNumber == null) {
-            pageNumber = 0;
+        Bson query = filter.toBson();
+        PageToken token = null;
+
+        if (next != null) {
+            try {
+                token = PageToken.decode(next);
+            } catch (IllegalArgumentException e) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"Invalid next token!\"]")
+                        .build();
+            }
+
+            if (!token.isSortedBy(sort)) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"The next token belongs to a different sort!\"]")
+                        .build();
+            }
         }
 
-        var foundPets = (filters.size() != 0)
-                ? petsCollection.find(and(filters)).skip(pageSize * pageNumber).limit(pageSize)
-                : petsCollection.find().skip(pageSize * pageNumber).limit(pageSize);
-
-        // horrible but necessary way to format the documents for frontend to use
-        // below...
-        Jsonb jsonb = JsonbBuilder.create();
-
-        var pets = new ArrayList<Document>();
-        for (Pet foundPet : foundPets) {
-            var doc = Document.parse(jsonb.toJson(foundPet));
-            doc.replace("id", foundPet.getId().toString());
-            pets.add(doc);
+        FindIterable<Pet> found;
+        Function<Pet, PageToken> tokenAfter;
+
+        // null when the bitmaps are turned off or can't answer the filter
+        List<ObjectId> pageIds = sort == null && bitmapIndex != null
+                ? bitmapIndex.page(filter, token == null ? null : token.lastId(), pageSize + 1)
+                : null;
+
+        if (RELEVANCE.equals(sort)) {
+            // the score only exists while the query runs, so it can't be range
+            // filtered on like the other sorts, and these pages go by offset. text
+            // searches match few enough pets for that not to matter
+            int offset;
+
+            try {
+                offset = token == null ? 0 : token.offset();
+            } catch (IllegalArgumentException e) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"Invalid next token!\"]")
+                        .build();
+            }
+
+            int nextOffset = offset + pageSize;
+            found = petsCollection.find(query)
+                    .sort(Sorts.orderBy(Sorts.metaTextScore("score"), Sorts.ascending("_id")))
+                    .skip(offset);
+            tokenAfter = pet -> PageToken.after(RELEVANCE, new BsonInt32(nextOffset), pet.getId());
+        } else if (pageIds != null) {
+            // the bitmaps already know which pets are on the page, only fetch those
+            found = petsCollection.find(in("_id", pageIds)).sort(PageToken.sort(null));
+            tokenAfter = pet -> PageToken.after(null, null, pet.getId());
+        } else {
+            if (token != null) {
+                query = and(query, token.filter());
+            }
+
+            String sortBy = sort;
+            Function<Pet, BsonValue> sortKey = sort == null ? pet -> null : sortKeys.get(sort);
+            found = petsCollection.find(query).sort(PageToken.sort(sort));
+            tokenAfter = pet -> PageToken.after(sortBy, sortKey.apply(pet), pet.getId());
         }
 
-        if (pets.size() == 0) {
+        // one extra document tells us whether there is a next page
+        MongoCursor<Pet> pets = found.limit(pageSize + 1).iterator();
+
+        // running out of pets part way through the pages is not an error
+        if (next == null && !pets.hasNext()) {
+            pets.close();
             return Response.status(404).build();
         }
 
-        return Response.ok(jsonb.toJson(pets)).build();
+        return Response
+                .ok(new JsonPageStreamingOutput<>(pets, pageSize, tokenAfter))
+                .build();
+    }
+
+    @GET
+    @Path("/facets")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "How many of the matching pets there are of each type, breed, size, sex and age bucket")
+    })
+    @Operation(summary = "Count the pets matching the filters by each of the attributes they can be filtered by")
+    public Response facets(@BeanParam PetFilter filter) {
+        return Response.ok(facets.count(filter)).build();
     }
 
     @PUT
@@ -224,24 +387,21 @@ public class PetService extends AbstractService<Pet> {
                     .entity(vio.toString())
                     .build();
         }
-        MongoCollection<Pet> petsCollection = db.getCollection("Pets",
-                Pet.class);
-
-        UpdateResult updateResult = petsCollection
-                .replaceOne(eq("_id", oid), updatedEntry);
+        // the version is bumped as part of the replace, so answer with what was stored
+        Pet updated = replace(oid, updatedEntry);
 
-        if (updateResult.getMatchedCount() == 0) {
+        if (updated == null) {
             return Response
                     .status(Response.Status.NOT_FOUND)
                     .entity("[\"_id was not found!\"]")
                     .build();
         }
 
-        updatedEntry.setId(oid);
+        fireWrite(ModelWrite.Kind.UPDATE, oid, updated);
 
         return Response
                 .status(Response.Status.OK)
-                .entity(updatedEntry.toJson())
+                .entity(updated.toJson())
                 .build();
     }
 
@@ -261,8 +421,7 @@ public class PetService extends AbstractService<Pet> {
                     .build();
         }
 
-        MongoCollection<Shelter> petCollection = db.getCollection("Pets",
-                Shelter.class);
+        MongoCollection<Pet> petCollection = collection();
 
         var removedPet = petCollection.findOneAndDelete(eq("_id", oid));
         if (removedPet == null) {
@@ -270,6 +429,7 @@ public class PetService extends AbstractService<Pet> {
         }
 
         removedPet.setId(oid);
+        fireWrite(ModelWrite.Kind.DELETE, oid, removedPet);
 
         return Response.ok(removedPet.toJson()).build();
     }
@@ -0,0 +1,75 @@
+package oz.rest.services;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The validators of a stored document and the conditional request headers
+ * checked against them. The strong ETag is the document's version, which the
+ * services increment on every write, and Last-Modified is the time of that
+ * write. HTTP dates only go down to the second, so that's what they're
+ * compared at.
+ */
+final class Preconditions {
+    private Preconditions() {
+    }
+
+    static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String httpDate(Instant instant) {
+        return DateTimeFormatter.RFC_1123_DATE_TIME.format(instant.atZone(ZoneOffset.UTC));
+    }
+
+    /**
+     * Whether the client's copy is still current. If-None-Match wins over
+     * If-Modified-Since when both are sent, like RFC 9110 says.
+     */
+    static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag, Instant lastModified) {
+        if (ifNoneMatch != null) {
+            return matches(ifNoneMatch, etag);
+        }
+        if (ifModifiedSince != null) {
+            return notModifiedSince(ifModifiedSince, lastModified);
+        }
+        return false;
+    }
+
+    // If-None-Match compares weakly, so W/"3" matches "3" too
+    static boolean matches(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static boolean notModifiedSince(String ifModifiedSince, Instant lastModified) {
+        if (lastModified == null) {
+            return false;
+        }
+
+        Instant since;
+        try {
+            since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            // invalid dates are ignored
+            return false;
+        }
+
+        return !lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+}
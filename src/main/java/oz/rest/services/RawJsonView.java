@@ -0,0 +1,154 @@
+package oz.rest.services;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.RawBsonDocument;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+
+/**
+ * Transcodes raw bson documents straight into the json the model classes would
+ * serialize to, without decoding them into the models first. The top level
+ * "_id" is written as the string "id", fields stored under a different name
+ * than their json property are renamed, and write-only fields are left out.
+ */
+public class RawJsonView {
+    // Json.createGenerator() looks the provider up on every call, the factory only once
+    private static final JsonGeneratorFactory generators = Json.createGeneratorFactory(null);
+
+    public static final RawJsonView PETS = new RawJsonView(Map.of(), Set.of());
+    public static final RawJsonView SHELTERS = new RawJsonView(Map.of(), Set.of("password"));
+    public static final RawJsonView ADOPTERS = new RawJsonView(Map.of("email_address", "emailAddress"), Set.of());
+
+    private final Map<String, String> renamed;
+    private final Set<String> hidden;
+
+    public RawJsonView(Map<String, String> renamed, Set<String> hidden) {
+        this.renamed = renamed;
+        this.hidden = hidden;
+    }
+
+    // for writing several documents into one response
+    static JsonGenerator generator(Writer writer) {
+        return generators.createGenerator(writer);
+    }
+
+    public String toJson(RawBsonDocument document) {
+        StringWriter json = new StringWriter();
+
+        try (JsonGenerator generator = generators.createGenerator(json)) {
+            write(document, generator);
+        }
+
+        return json.toString();
+    }
+
+    /**
+     * Writes the document as the next value of the generator, so it can be an
+     * array element or follow a {@link JsonGenerator#writeKey(String)}.
+     */
+    public void write(RawBsonDocument document, JsonGenerator generator) {
+        generator.writeStartObject();
+        writeFields(document, generator);
+        generator.writeEnd();
+    }
+
+    /**
+     * Writes the fields of the document into the object the generator is in,
+     * so more can be added after them.
+     */
+    public void writeFields(RawBsonDocument document, JsonGenerator generator) {
+        try (BsonReader reader = document.asBsonReader()) {
+            reader.readStartDocument();
+
+            while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                String name = reader.readName();
+
+                if (hidden.contains(name)) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                if (name.equals("_id")) {
+                    name = "id";
+                } else {
+                    name = renamed.getOrDefault(name, name);
+                }
+
+                writeField(name, reader, generator);
+            }
+
+            reader.readEndDocument();
+        }
+    }
+
+    private static void writeField(String name, BsonReader reader, JsonGenerator generator) {
+        // json-b leaves out null properties, so do the same
+        if (!isWritable(reader.getCurrentBsonType())) {
+            reader.skipValue();
+            return;
+        }
+
+        generator.writeKey(name);
+        writeValue(reader, generator);
+    }
+
+    private static void writeValue(BsonReader reader, JsonGenerator generator) {
+        switch (reader.getCurrentBsonType()) {
+            case OBJECT_ID -> generator.write(reader.readObjectId().toHexString());
+            case STRING -> generator.write(reader.readString());
+            case SYMBOL -> generator.write(reader.readSymbol());
+            case INT32 -> generator.write(reader.readInt32());
+            case INT64 -> generator.write(reader.readInt64());
+            case DOUBLE -> generator.write(reader.readDouble());
+            case DECIMAL128 -> generator.write(reader.readDecimal128().bigDecimalValue());
+            case BOOLEAN -> generator.write(reader.readBoolean());
+            case DATE_TIME -> generator.write(Instant.ofEpochMilli(reader.readDateTime()).toString());
+            case DOCUMENT -> {
+                reader.readStartDocument();
+                generator.writeStartObject();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    writeField(reader.readName(), reader, generator);
+                }
+                reader.readEndDocument();
+                generator.writeEnd();
+            }
+            case ARRAY -> {
+                reader.readStartArray();
+                generator.writeStartArray();
+                while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+                    if (isWritable(reader.getCurrentBsonType())) {
+                        writeValue(reader, generator);
+                    } else {
+                        reader.skipValue();
+                        generator.writeNull();
+                    }
+                }
+                reader.readEndArray();
+                generator.writeEnd();
+            }
+            default -> {
+                reader.skipValue();
+                generator.writeNull();
+            }
+        }
+    }
+
+    // none of the models store binary, regex, code etc. so there's no json shape
+    // for them, and nulls are left out like json-b does
+    private static boolean isWritable(BsonType type) {
+        return switch (type) {
+            case OBJECT_ID, STRING, SYMBOL, INT32, INT64, DOUBLE, DECIMAL128, BOOLEAN, DATE_TIME,
+                    DOCUMENT, ARRAY -> true;
+            default -> false;
+        };
+    }
+}
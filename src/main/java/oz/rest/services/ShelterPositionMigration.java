@@ -0,0 +1,161 @@
+package oz.rest.services;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+
+import jakarta.annotation.Resource;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.Startup;
+import jakarta.inject.Inject;
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Shelter;
+
+/**
+ * Fills in the GeoJSON position of the shelters stored before it existed,
+ * from their latitude and longitude strings, so they can be found by the
+ * 2dsphere index and the shelter grid. Runs in the background at startup in
+ * batches of {@code migrations.batch-size}, one bulkWrite each. The last _id
+ * done is kept in the Migrations collection after every batch, so a restart
+ * picks up where it stopped rather than starting over. Shelters whose
+ * coordinates can't be parsed are counted and left alone.
+ */
+@ApplicationScoped
+public class ShelterPositionMigration {
+    private static final Logger logger = LoggerFactory.getLogger(ShelterPositionMigration.class);
+
+    static final String NAME = "shelter-positions";
+
+    @Inject
+    @ConfigProperty(name = "migrations.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @Inject
+    MongoDatabase db;
+
+    @Inject
+    Event<ModelWrite> writes;
+
+    @Resource
+    ManagedExecutorService executor;
+
+    void onStart(@Observes Startup startup) {
+        executor.execute(() -> {
+            try {
+                run();
+            } catch (MongoException e) {
+                logger.error("Could not finish migrating the shelter positions, it resumes on the next start", e);
+            }
+        });
+    }
+
+    static MongoCollection<Document> migrations(MongoDatabase db) {
+        return db.getCollection("Migrations");
+    }
+
+    /**
+     * Migrates whatever is left, returns how many shelters it changed.
+     */
+    public long run() {
+        MongoCollection<Document> migrations = migrations(db);
+        MongoCollection<Document> shelters = db.getCollection("Shelters");
+
+        Document progress = migrations.find(Filters.eq("_id", NAME)).first();
+        if (progress != null && progress.getBoolean("done", false)) {
+            return 0;
+        }
+        ObjectId lastId = progress == null ? null : progress.getObjectId("lastId");
+
+        long migrated = 0;
+        long started = System.nanoTime();
+
+        while (true) {
+            List<Document> batch = shelters
+                    .find(Filters.and(
+                            lastId == null ? Filters.empty() : Filters.gt("_id", lastId),
+                            Filters.exists("position", false)))
+                    .projection(Projections.include("latitude", "longitude"))
+                    .sort(Sorts.ascending("_id"))
+                    .limit(batchSize)
+                    .into(new ArrayList<>());
+
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            List<WriteModel<Document>> updates = new ArrayList<>(batch.size());
+            for (Document shelter : batch) {
+                GeoPoint position = GeoPoint.of(string(shelter, "latitude"), string(shelter, "longitude"));
+                if (position != null) {
+                    updates.add(new UpdateOneModel<>(
+                            // someone may have saved it with a position since it was read
+                            Filters.and(Filters.eq("_id", shelter.getObjectId("_id")), Filters.exists("position", false)),
+                            Updates.combine(
+                                    Updates.set("position", new Document("type", position.getType())
+                                            .append("coordinates", position.getCoordinates())),
+                                    AbstractService.stampUpdate())));
+                }
+            }
+
+            long changed = 0;
+            if (!updates.isEmpty()) {
+                changed = shelters.bulkWrite(updates, new BulkWriteOptions().ordered(false)).getModifiedCount();
+            }
+            migrated += changed;
+            lastId = batch.get(batch.size() - 1).getObjectId("_id");
+
+            migrations.updateOne(Filters.eq("_id", NAME),
+                    Updates.combine(
+                            Updates.set("lastId", lastId),
+                            Updates.inc("migrated", changed),
+                            Updates.inc("skipped", (long) (batch.size() - updates.size())),
+                            Updates.set("updatedAt", new Date())),
+                    new UpdateOptions().upsert(true));
+
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+
+        migrations.updateOne(Filters.eq("_id", NAME),
+                Updates.combine(Updates.set("done", true), Updates.set("updatedAt", new Date())),
+                new UpdateOptions().upsert(true));
+
+        if (migrated > 0) {
+            logger.info("Migrated the positions of {} shelters in {} ms", migrated,
+                    (System.nanoTime() - started) / 1_000_000);
+            // anything kept in memory about the shelters missed these
+            if (writes != null) {
+                writes.fire(new ModelWrite(ModelWrite.Kind.INVALIDATE, Shelter.class, null, null));
+            }
+        }
+
+        return migrated;
+    }
+
+    private static String string(Document document, String key) {
+        Object value = document.get(key);
+        return value instanceof String ? (String) value : null;
+    }
+}
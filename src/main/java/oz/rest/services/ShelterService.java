@@ -2,9 +2,12 @@ package oz.rest.services;
 
 import com.mongodb.ErrorCategory;
 import com.mongodb.MongoWriteException;
+import org.bson.BsonArray;
 import org.bson.Document;
+import org.bson.RawBsonDocument;
 import org.bson.conversions.Bson;
 import org.bson.types.ObjectId;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
 // import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
@@ -16,14 +19,26 @@ import com.ibm.websphere.security.jwt.InvalidBuilderException;
 import com.ibm.websphere.security.jwt.InvalidClaimException;
 import com.ibm.websphere.security.jwt.JwtBuilder;
 import com.ibm.websphere.security.jwt.JwtException;
+import com.mongodb.client.ClientSession;
+import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.DeleteResult;
 import com.mongodb.client.result.InsertOneResult;
 import com.mongodb.client.result.UpdateResult;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.json.JsonArray;
-import jakarta.json.bind.Jsonb;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
 import jakarta.json.bind.JsonbBuilder;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.ws.rs.HeaderParam;
 import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.QueryParam;
@@ -35,9 +50,12 @@ import jakarta.ws.rs.PUT;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Pet;
 import oz.rest.models.Shelter;
 import static com.mongodb.client.model.Filters.eq;
 
+import java.io.StringWriter;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -45,6 +63,9 @@ import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static com.mongodb.client.model.Filters.and;
 
@@ -56,9 +77,28 @@ import static com.mongodb.client.model.Filters.and;
 @Path("/shelter")
 @ApplicationScoped
 public class ShelterService extends AbstractService<Shelter> {
-    // TODO: getting the collection is done for every service,
-    // so it would be nice to have that moved into the AbstractService
-    // as a field somehow, and initialized in each service
+    // only needed to start transactions, null when a test builds the service
+    @Inject
+    MongoClient client;
+
+    @Inject
+    @ConfigProperty(name = "mongo.transactions.enabled", defaultValue = "false")
+    boolean transactions;
+
+    // the shelters' pets, looked up once like collection()
+    private volatile MongoCollection<Pet> petsCollection;
+
+    public ShelterService() {
+        super("Shelters", Shelter.class, RawJsonView.SHELTERS);
+    }
+
+    private MongoCollection<Pet> pets() {
+        if (petsCollection == null) {
+            petsCollection = db.getCollection("Pets", Pet.class);
+        }
+        return petsCollection;
+    }
+
     @Override
     @POST
     @APIResponses({
@@ -80,15 +120,17 @@ public class ShelterService extends AbstractService<Shelter> {
         // by setting all emails to lowercase, emails can be case-insensitive to end
         // user :)
         newEntry.setEmailAddress(newEntry.getEmailAddress().toLowerCase());
+        newEntry.setPosition(GeoPoint.of(newEntry.getLatitude(), newEntry.getLongitude()));
 
         try {
-            MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                    Shelter.class);
+            MongoCollection<Shelter> sheltersCollection = collection();
+            stampInsert(newEntry);
             InsertOneResult res = sheltersCollection.insertOne(newEntry);
 
             ObjectId oid = res.getInsertedId().asObjectId().getValue();
 
             newEntry.setId(oid);
+            fireWrite(ModelWrite.Kind.INSERT, oid, newEntry);
 
         } catch (MongoWriteException e) {
             if (e.getError().getCategory() == ErrorCategory.DUPLICATE_KEY) {
@@ -129,11 +171,17 @@ public class ShelterService extends AbstractService<Shelter> {
         return Response.ok(jsonb.toJson(json)).build();
     }
 
+    @Override
+    public Response retrieve(String id) {
+        return retrieve(id, null, null);
+    }
+
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{id}")
-    @Override
     @GET
-    public Response retrieve(@PathParam("id") String id) {
+    public Response retrieve(@PathParam("id") String id,
+            @Parameter(description = "The ETag of the copy the client has, to get a 304 if it's still current.") @HeaderParam("If-None-Match") String ifNoneMatch,
+            @HeaderParam("If-Modified-Since") String ifModifiedSince) {
         ObjectId oid;
 
         try {
@@ -144,26 +192,182 @@ public class ShelterService extends AbstractService<Shelter> {
                     .entity("[\"Invalid object id!\"]")
                     .build();
         }
-        MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                Shelter.class);
+
+        // a client polling for changes only needs the version, which the index has
+        Response notModified = notModified(oid, ifNoneMatch, ifModifiedSince);
+        if (notModified != null) {
+            return notModified;
+        }
+
+        // read only, so skip decoding into a Shelter and write the stored bytes out as
+        // json, which also keeps the password out of the response
+        MongoCollection<RawBsonDocument> sheltersCollection = rawCollection();
 
         var shelter = sheltersCollection.find(eq("_id", oid)).first();
 
         if (shelter == null) {
             return Response.status(400).build();
         } else {
-            return Response.ok(shelter.toJson()).build();
+            return withValidators(Response.ok(RawJsonView.SHELTERS.toJson(shelter)), shelter).build();
         }
     }
 
+    // the pet fields of ?view=summary, enough for a list on the shelter's page
+    static final List<String> SUMMARY_FIELDS = List.of("name", "type", "breed", "age", "sex", "size");
+
+    static final int DEFAULT_ROSTER_PAGE_SIZE = 20;
+
+    // the whole page comes back inside the one looked up document, which has to
+    // fit in 16MB. without their images a hundred pets are nowhere near that
+    static final int MAX_ROSTER_PAGE_SIZE = 100;
+
+    // the shelter without its password or the looked up pets
+    private static final RawJsonView ROSTER_HEADER = new RawJsonView(Map.of(), Set.of("password", "pets"));
+
+    /**
+     * The shelter and the first page of its pets from one aggregation, a $match
+     * on the shelter and a $lookup of a keyset page of its pets in _id order.
+     * Returns {"shelter": {...}, "pets": {"items": [...], "next": token}}, the
+     * same page shape as GET /pet. The pets come without their images, which
+     * are big enough that a page of them wouldn't fit in the one document;
+     * GET /pet/{id} or GET /pet?ids= has them.
+     */
+    @GET
+    @Path("/{id}/pets")
+    @Produces(MediaType.APPLICATION_JSON)
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The shelter and a page of its pets, without their images"),
+            @APIResponse(responseCode = "400", description = "Invalid id, page size, view or next token"),
+            @APIResponse(responseCode = "404", description = "Shelter not found")
+    })
+    @Operation(summary = "A shelter with a page of its pets, in one request")
+    public Response roster(@PathParam("id") String id,
+            @QueryParam(value = "page_size") Integer pageSize,
+            @Parameter(description = "The next token of the previous page.") @QueryParam(value = "next") String next,
+            @Parameter(description = "summary for only the fields a list of pets needs, full (the default) for everything") @QueryParam(value = "view") String view) {
+        if (id == null || !ObjectId.isValid(id)) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Invalid object id!\"]")
+                    .build();
+        }
+
+        if (pageSize == null) {
+            pageSize = DEFAULT_ROSTER_PAGE_SIZE;
+        }
+
+        if (pageSize < 1 || pageSize > MAX_ROSTER_PAGE_SIZE) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"Page size must be between 1 and " + MAX_ROSTER_PAGE_SIZE + "!\"]")
+                    .build();
+        }
+
+        if (view != null && !view.equals("summary") && !view.equals("full")) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"view must be summary or full!\"]")
+                    .build();
+        }
+
+        PageToken token = null;
+        if (next != null) {
+            try {
+                token = PageToken.decode(next);
+            } catch (IllegalArgumentException e) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"Invalid next token!\"]")
+                        .build();
+            }
+
+            if (!token.isSortedBy(null)) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"The next token belongs to a different sort!\"]")
+                        .build();
+            }
+        }
+
+        RawBsonDocument shelter = rawCollection()
+                .aggregate(rosterPipeline(new ObjectId(id), token, pageSize, "summary".equals(view)))
+                .first();
+
+        if (shelter == null) {
+            return Response
+                    .status(Response.Status.NOT_FOUND)
+                    .entity("[\"_id was not found!\"]")
+                    .build();
+        }
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = RawJsonView.generator(json)) {
+            generator.writeStartObject();
+            generator.writeKey("shelter");
+            ROSTER_HEADER.write(shelter, generator);
+
+            generator.writeStartObject("pets");
+            generator.writeStartArray("items");
+
+            BsonArray pets = shelter.getArray("pets");
+            ObjectId last = null;
+            for (int i = 0; i < pets.size() && i < pageSize; i++) {
+                RawBsonDocument pet = (RawBsonDocument) pets.get(i);
+                RawJsonView.PETS.write(pet, generator);
+                last = pet.getObjectId("_id").getValue();
+            }
+            generator.writeEnd();
+
+            // the extra pet means there is another page
+            if (pets.size() > pageSize) {
+                generator.write("next", PageToken.after(null, null, last).encode());
+            } else {
+                generator.writeNull("next");
+            }
+
+            generator.writeEnd();
+            generator.writeEnd();
+        }
+
+        return Response.ok(json.toString()).build();
+    }
+
+    static List<Bson> rosterPipeline(ObjectId shelterId, PageToken token, int pageSize, boolean summary) {
+        // the shelter's id is known up front, so the lookup is uncorrelated and runs
+        // once as a plain query on { currentShelterId, _id }
+        Bson ofShelter = eq("currentShelterId", shelterId.toHexString());
+
+        List<Bson> pets = new ArrayList<>();
+        pets.add(Aggregates.match(token == null ? ofShelter : and(ofShelter, token.filter())));
+        pets.add(Aggregates.sort(PageToken.sort(null)));
+        // one more than the page, to tell whether there's a next one
+        pets.add(Aggregates.limit(pageSize + 1));
+        pets.add(Aggregates.project(summary
+                ? Projections.include(SUMMARY_FIELDS)
+                : Projections.exclude("images")));
+
+        return List.of(
+                Aggregates.match(eq("_id", shelterId)),
+                Aggregates.lookup("Pets", pets, "pets"));
+    }
+
+    // kept for callers that don't look up by ids
+    public Response find(String name, String emailAddress, Integer pageSize, Integer pageNumber) {
+        return find(name, emailAddress, pageSize, pageNumber, null);
+    }
+
     @Produces(MediaType.APPLICATION_JSON)
     @GET
     public Response find(@QueryParam(value = "name") String name,
             @QueryParam(value = "email_address") String emailAddress,
             @QueryParam(value = "page_size") Integer pageSize,
-            @QueryParam(value = "page_number") Integer pageNumber) {
-        MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                Shelter.class);
+            @QueryParam(value = "page_number") Integer pageNumber,
+            @Parameter(description = "Comma separated ids to retrieve at once instead of searching, see also POST /batch.") @QueryParam(value = "ids") String ids) {
+        if (ids != null) {
+            return retrieveMany(splitIds(ids));
+        }
+
+        MongoCollection<Shelter> sheltersCollection = collection();
 
         ArrayList<Bson> filters = new ArrayList<Bson>();
 
@@ -189,20 +393,14 @@ public class ShelterService extends AbstractService<Shelter> {
                 ? sheltersCollection.find(and(filters)).skip(pageSize * pageNumber).limit(pageSize)
                 : sheltersCollection.find().skip(pageSize * pageNumber).limit(pageSize);
 
-        Jsonb jsonb = JsonbBuilder.create();
+        MongoCursor<Shelter> shelters = foundShelters.iterator();
 
-        var shelters = new ArrayList<Document>();
-        for (Shelter foundShelter : foundShelters) {
-            var doc = Document.parse(jsonb.toJson(foundShelter));
-            doc.replace("id", foundShelter.getId().toString());
-            shelters.add(doc);
-        }
-
-        if (shelters.size() == 0) {
+        if (!shelters.hasNext()) {
+            shelters.close();
             return Response.status(404).build();
         }
 
-        return Response.ok(jsonb.toJson(shelters)).build();
+        return Response.ok(new JsonArrayStreamingOutput<>(shelters)).build();
     }
 
     @PUT
@@ -239,32 +437,94 @@ public class ShelterService extends AbstractService<Shelter> {
         // by setting all emails to lowercase, emails can be case-insensitive to end
         // user :)
         updatedEntry.setEmailAddress(updatedEntry.getEmailAddress().toLowerCase());
-        MongoCollection<Shelter> shelters = db.getCollection("Shelters",
-                Shelter.class);
+        updatedEntry.setPosition(GeoPoint.of(updatedEntry.getLatitude(), updatedEntry.getLongitude()));
 
-        UpdateResult updateResult = shelters
-                .replaceOne(eq("_id", oid), updatedEntry);
+        // the version is bumped as part of the replace, so answer with what was stored
+        Shelter updated = replace(oid, updatedEntry);
 
-        if (updateResult.getMatchedCount() == 0) {
+        if (updated == null) {
             return Response
                     .status(Response.Status.NOT_FOUND)
                     .entity("[\"_id was not found!\"]")
                     .build();
         }
 
-        updatedEntry.setId(oid);
+        fireWrite(ModelWrite.Kind.UPDATE, oid, updated);
 
         return Response
                 .status(Response.Status.OK)
-                .entity(updatedEntry.toJson())
+                .entity(updated.toJson())
                 .build();
     }
 
+    // the position needs both coordinates, so they're only patched together
+    @Override
+    public Response patch(String id, JsonObject patch) {
+        if (patch != null && patch.containsKey("latitude") != patch.containsKey("longitude")) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The latitude and longitude have to be changed together!\"]")
+                    .build();
+        }
+        return super.patch(id, patch);
+    }
+
+    @Override
+    protected Bson derivedUpdate(JsonObject patch) {
+        if (!patch.containsKey("latitude")) {
+            return null;
+        }
+
+        GeoPoint position = GeoPoint.of(stringOrNull(patch, "latitude"), stringOrNull(patch, "longitude"));
+        return position == null ? Updates.unset("position") : Updates.set("position", position);
+    }
+
+    private static String stringOrNull(JsonObject patch, String name) {
+        return patch.get(name) instanceof JsonString value ? value.getString() : null;
+    }
+
+    // emails are lowercased in patches too, like in add and update
+    @Override
+    protected Object patchValue(String property, Object value) {
+        if (property.equals("emailAddress") && value instanceof String email) {
+            return email.toLowerCase();
+        }
+        return value;
+    }
+
+    // what remove does with the shelter's pets
+    static final String PETS_KEEP = "keep";
+    static final String PETS_DELETE = "delete";
+    static final String PETS_REASSIGN = "reassign";
+
+    // the shelter a remove took out and what happened to its pets
+    record Removal(Shelter shelter, long petsDeleted, long petsReassigned) {
+    }
+
+    @Override
+    public Response remove(String id) {
+        return remove(id, null, null);
+    }
+
+    /**
+     * Removes the shelter and, with {@code pets=delete} or
+     * {@code pets=reassign&reassign_to=<shelter id>}, all of its pets with one
+     * deleteMany or updateMany, however many there are. With
+     * {@code mongo.transactions.enabled} both happen in one transaction, which
+     * needs mongo to run as a replica set.
+     */
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/{id}")
     @DELETE
-    @Override
-    public Response remove(@PathParam(value = "id") String id) {
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The removed shelter, and how many of its pets were deleted or reassigned"),
+            @APIResponse(responseCode = "400", description = "Invalid id, pets mode or reassign_to"),
+            @APIResponse(responseCode = "404", description = "The shelter or the one to reassign the pets to was not found")
+    })
+    @Operation(summary = "Remove a shelter, optionally deleting or reassigning its pets")
+    public Response remove(@PathParam(value = "id") String id,
+            @Parameter(description = "What to do with the shelter's pets: keep (the default), delete or reassign") @QueryParam("pets") String pets,
+            @Parameter(description = "The shelter to move the pets to with pets=reassign") @QueryParam("reassign_to") String reassignTo) {
         ObjectId oid;
 
         try {
@@ -276,16 +536,94 @@ public class ShelterService extends AbstractService<Shelter> {
                     .build();
         }
 
-        MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                Shelter.class);
+        String mode = pets == null ? PETS_KEEP : pets;
 
-        var removedShelter = sheltersCollection.findOneAndDelete(eq("_id", oid));
+        if (!mode.equals(PETS_KEEP) && !mode.equals(PETS_DELETE) && !mode.equals(PETS_REASSIGN)) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"pets must be keep, delete or reassign!\"]")
+                    .build();
+        }
 
-        if (removedShelter == null) {
-            return Response.status(404).entity("Shelter ID not found...").build();
+        if (mode.equals(PETS_REASSIGN)) {
+            if (reassignTo == null || !ObjectId.isValid(reassignTo)) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"Reassigning the pets needs a valid reassign_to shelter id!\"]")
+                        .build();
+            }
+            if (reassignTo.equals(id)) {
+                return Response
+                        .status(Response.Status.BAD_REQUEST)
+                        .entity("[\"The pets can't be reassigned to the shelter being removed!\"]")
+                        .build();
+            }
+            if (collection().countDocuments(eq("_id", new ObjectId(reassignTo)), new CountOptions().limit(1)) == 0) {
+                return Response
+                        .status(Response.Status.NOT_FOUND)
+                        .entity("[\"The shelter to reassign the pets to was not found!\"]")
+                        .build();
+            }
+        }
+
+        Removal removal;
+        if (transactions && client != null) {
+            try (ClientSession session = client.startSession()) {
+                removal = session.withTransaction(() -> removeWithPets(session, oid, mode, reassignTo));
+            }
         } else {
-            return Response.ok(removedShelter.toJson()).build();
+            removal = removeWithPets(null, oid, mode, reassignTo);
+        }
+
+        if (removal.shelter() == null) {
+            return Response.status(404).entity("Shelter ID not found...").build();
         }
+
+        fireWrite(ModelWrite.Kind.DELETE, oid, removal.shelter());
+        if (removal.petsDeleted() > 0 || removal.petsReassigned() > 0) {
+            // too many pets changed to send them one by one
+            fireInvalidate(Pet.class);
+        }
+
+        if (mode.equals(PETS_KEEP)) {
+            return Response.ok(removal.shelter().toJson()).build();
+        }
+
+        return Response.ok("{\"shelter\":" + removal.shelter().toJson()
+                + ",\"petsDeleted\":" + removal.petsDeleted()
+                + ",\"petsReassigned\":" + removal.petsReassigned() + "}").build();
+    }
+
+    // session is null outside of a transaction
+    private Removal removeWithPets(ClientSession session, ObjectId oid, String mode, String reassignTo) {
+        Bson byId = eq("_id", oid);
+        Shelter removed = session == null
+                ? collection().findOneAndDelete(byId)
+                : collection().findOneAndDelete(session, byId);
+
+        if (removed == null) {
+            return new Removal(null, 0, 0);
+        }
+
+        MongoCollection<Pet> pets = pets();
+        Bson ofShelter = eq("currentShelterId", oid.toHexString());
+
+        if (mode.equals(PETS_DELETE)) {
+            DeleteResult deleted = session == null
+                    ? pets.deleteMany(ofShelter)
+                    : pets.deleteMany(session, ofShelter);
+            return new Removal(removed, deleted.getDeletedCount(), 0);
+        }
+
+        if (mode.equals(PETS_REASSIGN)) {
+            Bson reassign = Updates.combine(Updates.set("currentShelterId", reassignTo), stampUpdate());
+            UpdateResult reassigned = session == null
+                    ? pets.updateMany(ofShelter, reassign)
+                    : pets.updateMany(session, ofShelter, reassign);
+            return new Removal(removed, 0, reassigned.getModifiedCount());
+        }
+
+        return new Removal(removed, 0, 0);
     }
 
     @Path("/login")
@@ -299,8 +637,7 @@ public class ShelterService extends AbstractService<Shelter> {
     })
     public Response login(@QueryParam(value = "emailAddress") String emailAddress,
             @QueryParam(value = "password") String password) throws Exception {
-        MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                Shelter.class);
+        MongoCollection<Shelter> sheltersCollection = collection();
 
         // TODO: encrypt passwords at rest, java.security MessageDigest looks promising
 
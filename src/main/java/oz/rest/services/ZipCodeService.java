@@ -1,29 +1,48 @@
 package oz.rest.services;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.bson.RawBsonDocument;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.eclipse.microprofile.openapi.annotations.Operation;
+import org.eclipse.microprofile.openapi.annotations.parameters.Parameter;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
+import org.eclipse.microprofile.openapi.annotations.responses.APIResponses;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import jakarta.ws.rs.Consumes;
 
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.FindIterable;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.GeoNearOptions;
+import com.mongodb.client.model.geojson.Point;
+import com.mongodb.client.model.geojson.Position;
+
 import java.io.IOException;
+import java.io.StringWriter;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.json.Json;
 import jakarta.json.JsonArray;
 import jakarta.json.JsonArrayBuilder;
+import jakarta.json.stream.JsonGenerator;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Validator;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
+import oz.rest.geo.ShelterGrid;
+import oz.rest.geo.ShelterIndex;
+import oz.rest.geo.ZipCodeLocator;
 import oz.rest.models.ZipCode;
-import oz.rest.models.Shelter;
-import java.util.ArrayList;
 
 @Tag(name = "Zip Code")
 @Path("/zip_code")
@@ -37,6 +56,31 @@ public class ZipCodeService {
     @Inject
     protected Validator validator;
 
+    @Inject
+    protected ZipCodeLocator locator;
+
+    @Inject
+    protected ShelterIndex shelterIndex;
+
+    // looked up once instead of on every request
+    private volatile MongoCollection<RawBsonDocument> rawShelters;
+
+    // the shelters are only passed through as json, so they aren't decoded
+    protected MongoCollection<RawBsonDocument> rawShelters() {
+        if (rawShelters == null) {
+            rawShelters = db.getCollection("Shelters", RawBsonDocument.class);
+        }
+        return rawShelters;
+    }
+
+    // not injected in the tests, where it only asks mapbox if a token is set
+    protected ZipCodeLocator locator() {
+        if (locator == null) {
+            locator = new ZipCodeLocator();
+        }
+        return locator;
+    }
+
     protected JsonArray getViolations(ZipCode data) {
         Set<ConstraintViolation<ZipCode>> violations = validator.validate(data);
 
@@ -49,10 +93,31 @@ public class ZipCodeService {
         return messages.build();
     }
 
-    // THIS IS THE ENDPOINT U HAVE TO EDIT
+    static final int DEFAULT_LIMIT = 10;
+    static final int MAX_LIMIT = 100;
+
+    // kept for callers from before limit and radius_km
+    public Response processZipCode(ZipCode newEntry) throws IOException {
+        return processZipCode(newEntry, null, null);
+    }
+
+    /**
+     * The shelters nearest to the zip code, closest first, each with its
+     * distance in km as "distanceKm". Ranked by the in-memory ShelterIndex
+     * when it's enabled, otherwise by a $geoNear on the shelters' 2dsphere
+     * indexed position, so only the shelters returned are read either way.
+     */
     @POST
     @Produces(MediaType.APPLICATION_JSON)
-    public Response processZipCode(ZipCode newEntry) throws IOException{
+    @APIResponses({
+            @APIResponse(responseCode = "200", description = "The nearest shelters, closest first, with their distance in km"),
+            @APIResponse(responseCode = "400", description = "Invalid or unknown zip code, limit or radius")
+    })
+    @Operation(summary = "Find the shelters nearest to a zip code")
+    public Response processZipCode(ZipCode newEntry,
+            @Parameter(description = "How many shelters to return, 10 by default and at most 100") @QueryParam("limit") Integer limit,
+            @Parameter(description = "Only shelters at most this many km away") @QueryParam("radius_km") Double radiusKm)
+            throws IOException {
         JsonArray violations = getViolations(newEntry);
 
         if (!violations.isEmpty()) {
@@ -62,53 +127,94 @@ public class ZipCodeService {
                     .build();
         }
 
-
-        MongoCollection<Shelter> sheltersCollection = db.getCollection("Shelters",
-                Shelter.class);
-
-            
-        FindIterable<Shelter> tempShelters = sheltersCollection.find();
-        ArrayList<Shelter> shelters = new ArrayList<Shelter>();
-
-        for(Shelter shelter : tempShelters){
-            shelters.add(shelter);
+        if (limit == null) {
+            limit = DEFAULT_LIMIT;
         }
 
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The limit must be between 1 and " + MAX_LIMIT + "!\"]")
+                    .build();
+        }
 
-        float[] newCoords = GeoEncodingTest.getZipCodeCoords(newEntry.getZipCode());
+        if (radiusKm != null && !(radiusKm > 0)) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The radius must be more than 0 km!\"]")
+                    .build();
+        }
 
-        float[] distArr = new float[shelters.size()];
+        // latitude, longitude
+        float[] coords = locator().coordinates(newEntry.getZipCode());
 
-        
-        int count = 0;
-        for(Shelter shelter : shelters){
-            float[] tempCoord = new float[2];
-            tempCoord[0] = (float)Float.valueOf(shelter.getLatitude());
-            tempCoord[1] = (float)Float.valueOf(shelter.getLongitude());
-            distArr[count] = GeoEncodingTest.distance(tempCoord, newCoords);
+        if (coords == null) {
+            return Response
+                    .status(Response.Status.BAD_REQUEST)
+                    .entity("[\"The zip code couldn't be found!\"]")
+                    .build();
         }
 
-        //Sort
+        // not injected in the tests
+        List<ShelterGrid.Neighbor> neighbors = shelterIndex == null ? null
+                : shelterIndex.nearest(coords[0], coords[1], limit,
+                        radiusKm == null ? Double.POSITIVE_INFINITY : radiusKm);
+
+        StringWriter json = new StringWriter();
+        try (JsonGenerator generator = RawJsonView.generator(json)) {
+            generator.writeStartArray();
+            if (neighbors != null) {
+                writeNeighbors(neighbors, generator);
+            } else {
+                for (RawBsonDocument shelter : rawShelters().aggregate(nearest(coords[0], coords[1], limit, radiusKm))) {
+                    RawJsonView.SHELTERS.write(shelter, generator);
+                }
+            }
+            generator.writeEnd();
+        }
 
-        int n = shelters.size();
-        for (int i = 1; i < n; ++i) {
-            float key = distArr[i];
-            int j = i - 1;
+        return Response.ok(json.toString()).build();
+    }
 
-            while (j >= 0 && distArr[j] > key) {
-                shelters.set(j+1, shelters.get(j));
-                j = j - 1;
-            }
-            shelters.set(j+1, shelters.get(i));
+    // the index only knows where the shelters are, so they're fetched by id
+    // and written in its order, with the same distanceKm $geoNear adds
+    private void writeNeighbors(List<ShelterGrid.Neighbor> neighbors, JsonGenerator generator) {
+        if (neighbors.isEmpty()) {
+            return;
         }
 
-        for(Shelter shelter : shelters){
-            System.out.println(shelter.getName());
+        List<ObjectId> ids = neighbors.stream().map(ShelterGrid.Neighbor::id).toList();
+        Map<ObjectId, RawBsonDocument> shelters = new HashMap<>();
+        for (RawBsonDocument shelter : rawShelters().find(Filters.in("_id", ids))) {
+            shelters.put(shelter.getObjectId("_id").getValue(), shelter);
         }
 
+        for (ShelterGrid.Neighbor neighbor : neighbors) {
+            RawBsonDocument shelter = shelters.get(neighbor.id());
+            // removed by another instance since the index last heard of it
+            if (shelter == null) {
+                continue;
+            }
+            generator.writeStartObject();
+            RawJsonView.SHELTERS.writeFields(shelter, generator);
+            generator.write("distanceKm", neighbor.distanceKm());
+            generator.writeEnd();
+        }
+    }
 
+    static List<Bson> nearest(double latitude, double longitude, int limit, Double radiusKm) {
+        GeoNearOptions options = GeoNearOptions.geoNearOptions()
+                .key("position")
+                .spherical()
+                // metres to km
+                .distanceMultiplier(0.001);
+        if (radiusKm != null) {
+            // always in metres for GeoJSON points, whatever the multiplier
+            options = options.maxDistance(radiusKm * 1000);
+        }
 
-        // REPLACE "T" WITH WHATEVER OBJECT U WANT TO RETURN TO THE USER AS JSON
-        return Response.ok("T").build();
+        return List.of(
+                Aggregates.geoNear(new Point(new Position(longitude, latitude)), "distanceKm", options),
+                Aggregates.limit(limit));
     }
-}
\ No newline at end of file
+}
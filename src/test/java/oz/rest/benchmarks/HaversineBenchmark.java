@@ -0,0 +1,85 @@
+package oz.rest.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import oz.rest.geo.Haversine;
+import oz.rest.services.GeoEncodingTest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distances from one origin to 1k, 100k and 1M points: GeoEncodingTest.distance
+ * called per point on float[] pairs, the scalar batch that hoists the origin's
+ * trig, and the batch. The batch is the scalar loop unless this is built
+ * with -Pvector and run with -Dvector=true, which forks with
+ * jdk.incubator.vector and geo.haversine.vector=true to put it on the
+ * Vector API. Run with the main method (or any JMH runner) after
+ * test-compile. No results have been recorded from it yet, on HotSpot or on
+ * OpenJ9.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HaversineBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    int points;
+
+    double[] latitudes;
+    double[] longitudes;
+    float[][] pairs;
+    double[] out;
+
+    final float[] origin = { 42.938f, -74.192f };
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        latitudes = new double[points];
+        longitudes = new double[points];
+        pairs = new float[points][];
+        out = new double[points];
+
+        for (int i = 0; i < points; i++) {
+            latitudes[i] = 25 + random.nextDouble() * 24;
+            longitudes[i] = -124 + random.nextDouble() * 57;
+            pairs[i] = new float[] { (float) latitudes[i], (float) longitudes[i] };
+        }
+    }
+
+    @Benchmark
+    public double[] perCall() {
+        for (int i = 0; i < points; i++) {
+            out[i] = GeoEncodingTest.distance(origin, pairs[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] pairAtATime() {
+        for (int i = 0; i < points; i++) {
+            out[i] = Haversine.distanceKm(origin[0], origin[1], latitudes[i], longitudes[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] batch() {
+        Haversine.distancesKm(origin[0], origin[1], latitudes, longitudes, 0, points, out);
+        return out;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder options = new OptionsBuilder();
+        options.include(HaversineBenchmark.class.getSimpleName());
+        if (Boolean.getBoolean("vector")) {
+            options.jvmArgsAppend("--add-modules", "jdk.incubator.vector", "-Dgeo.haversine.vector=true");
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,119 @@
+package oz.rest.benchmarks;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonBinaryWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import oz.rest.codecs.ModelCodecProvider;
+import oz.rest.models.Pet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+
+/**
+ * Compares decoding a page of pets with the automatic pojo codec against the
+ * hand-written one, the way a large find() page gets decoded.
+ * Run with the main method (or any JMH runner) after test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelCodecBenchmark {
+    @Param({"1", "100", "1000"})
+    int pageSize;
+
+    Codec<Pet> pojoCodec;
+    Codec<Pet> handCodec;
+    List<byte[]> page;
+    Pet pet;
+
+    @Setup
+    public void setUp() {
+        CodecRegistry pojo = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        CodecRegistry hand = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+                fromProviders(new ModelCodecProvider()));
+        pojoCodec = pojo.get(Pet.class);
+        handCodec = hand.get(Pet.class);
+
+        page = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            pet = samplePet(i);
+            BasicOutputBuffer buffer = new BasicOutputBuffer();
+            pojoCodec.encode(new BsonBinaryWriter(buffer), pet, EncoderContext.builder().build());
+            page.add(buffer.toByteArray());
+        }
+    }
+
+    Pet samplePet(int i) {
+        Pet pet = new Pet();
+        pet.setId(new ObjectId());
+        pet.setName("Mollie " + i);
+        pet.setCurrentShelterId("65f1c0ffee0000000000000" + (i % 10));
+        pet.setImages(new ArrayList<>(List.of("image-" + i)));
+        pet.setType(i % 2 == 0 ? "Dog" : "Cat");
+        pet.setBreed("German Shepherd");
+        pet.setColor("black");
+        pet.setHealth("healthy");
+        pet.setAge(i % 15);
+        pet.setSex(i % 2 == 0 ? "Female" : "Male");
+        pet.setSize("large");
+        pet.setTemperament("quiet");
+        pet.setDescription("Shy dog that warms up quickly and loves long walks.");
+        return pet;
+    }
+
+    void decodePage(Codec<Pet> codec, Blackhole blackhole) {
+        DecoderContext context = DecoderContext.builder().build();
+        for (byte[] document : page) {
+            blackhole.consume(codec.decode(new BsonBinaryReader(ByteBuffer.wrap(document)), context));
+        }
+    }
+
+    @Benchmark
+    public void decodePojo(Blackhole blackhole) {
+        decodePage(pojoCodec, blackhole);
+    }
+
+    @Benchmark
+    public void decodeHandWritten(Blackhole blackhole) {
+        decodePage(handCodec, blackhole);
+    }
+
+    @Benchmark
+    public byte[] encodePojo() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        pojoCodec.encode(new BsonBinaryWriter(buffer), pet, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] encodeHandWritten() {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        handCodec.encode(new BsonBinaryWriter(buffer), pet, EncoderContext.builder().build());
+        return buffer.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ModelCodecBenchmark.class.getSimpleName()).build()).run();
+    }
+}
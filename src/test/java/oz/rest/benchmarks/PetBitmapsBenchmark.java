@@ -0,0 +1,99 @@
+package oz.rest.benchmarks;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import oz.rest.search.PetBitmaps;
+import oz.rest.services.PetFilter;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long the bitmaps take to find a page of pets for the usual kinds of
+ * search, at 100k and 1M pets. A page costs this plus one find by _id in mongo.
+ * Run with the main method (or any JMH runner) after test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx4g"})
+public class PetBitmapsBenchmark {
+    static final String[] TYPES = {"Dog", "Cat", "Bird", "Rabbit", "Reptile"};
+    static final String[] SEXES = {"Female", "Male"};
+    static final String[] SIZES = {"small", "medium", "large"};
+    static final String[] COLORS = {"black", "white", "brown", "grey", "orange", "mixed"};
+    static final String[] HEALTH = {"healthy", "special needs", "recovering"};
+
+    @Param({"100000", "1000000"})
+    int pets;
+
+    PetBitmaps bitmaps;
+    ObjectId middle;
+
+    PetFilter broad;
+    PetFilter conjunction;
+    PetFilter selective;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        bitmaps = new PetBitmaps();
+
+        // ids have to increase like real ones, so count up from one timestamp
+        int timestamp = (int) (System.currentTimeMillis() / 1000);
+        for (int i = 0; i < pets; i++) {
+            ObjectId id = new ObjectId(timestamp, i);
+            String[] values = {
+                    pick(random, TYPES), pick(random, SEXES), pick(random, SIZES), pick(random, COLORS),
+                    pick(random, HEALTH), "shelter" + random.nextInt(200), "breed" + random.nextInt(300)
+            };
+            bitmaps.put(id, values, random.nextInt(20));
+            if (i == pets / 2) {
+                middle = id;
+            }
+        }
+
+        broad = new PetFilter(null, null, List.of("Dog"), null, null, null, null, null, null, null);
+        conjunction = new PetFilter(null, null, List.of("Dog", "Cat"), null, null, null, 2, 8, "Female", "large");
+        selective = new PetFilter(null, "shelter7", List.of("Dog"), null, "black", null, null, 5, null, null);
+    }
+
+    static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    @Benchmark
+    public List<ObjectId> broadFirstPage() {
+        return bitmaps.page(broad, null, 21);
+    }
+
+    @Benchmark
+    public List<ObjectId> conjunctionFirstPage() {
+        return bitmaps.page(conjunction, null, 21);
+    }
+
+    @Benchmark
+    public List<ObjectId> conjunctionMiddlePage() {
+        return bitmaps.page(conjunction, middle, 21);
+    }
+
+    @Benchmark
+    public List<ObjectId> selectiveFirstPage() {
+        return bitmaps.page(selective, null, 21);
+    }
+
+    @Benchmark
+    public int conjunctionCount() {
+        return bitmaps.count(conjunction);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PetBitmapsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,115 @@
+package oz.rest.benchmarks;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import oz.rest.geo.ShelterGrid;
+import oz.rest.services.GeoEncodingTest;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nearest 10 shelters to a point from the grid, against what
+ * ZipCodeService used to do: parse every shelter's latitude and longitude
+ * strings, work out each distance and insertion sort all of them. Shelters are
+ * spread over the continental US, the way they'd be clustered in real data.
+ * Run with the main method (or any JMH runner) after test-compile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShelterGridBenchmark {
+    @Param({"1000", "10000", "50000"})
+    int shelters;
+
+    // as they're stored on the shelters
+    String[] latitudeStrings;
+    String[] longitudeStrings;
+
+    ShelterGrid grid;
+
+    // somewhere in Kansas and the Amsterdam, NY of zip code 12010
+    final float[] middle = { 38.5f, -98.0f };
+    final float[] corner = { 42.938f, -74.192f };
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        ObjectId[] ids = new ObjectId[shelters];
+        double[] latitudes = new double[shelters];
+        double[] longitudes = new double[shelters];
+        latitudeStrings = new String[shelters];
+        longitudeStrings = new String[shelters];
+
+        for (int i = 0; i < shelters; i++) {
+            ids[i] = new ObjectId();
+            latitudes[i] = 25 + random.nextDouble() * 24;
+            longitudes[i] = -124 + random.nextDouble() * 57;
+            latitudeStrings[i] = Double.toString(latitudes[i]);
+            longitudeStrings[i] = Double.toString(longitudes[i]);
+        }
+
+        grid = ShelterGrid.of(ids, latitudes, longitudes);
+    }
+
+    @Benchmark
+    public int[] scanAndInsertionSort() {
+        return scanAndInsertionSort(corner, 10);
+    }
+
+    @Benchmark
+    public List<ShelterGrid.Neighbor> gridNearest() {
+        return grid.nearest(corner[0], corner[1], 10, Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public List<ShelterGrid.Neighbor> gridNearestInTheMiddle() {
+        return grid.nearest(middle[0], middle[1], 10, Double.POSITIVE_INFINITY);
+    }
+
+    @Benchmark
+    public List<ShelterGrid.Neighbor> gridWithin50Km() {
+        return grid.nearest(corner[0], corner[1], 100, 50);
+    }
+
+    // the old ranking, with its sort fixed to move the shelters along with their distances
+    int[] scanAndInsertionSort(float[] origin, int limit) {
+        int n = latitudeStrings.length;
+        float[] distances = new float[n];
+        int[] order = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            float[] coords = { Float.valueOf(latitudeStrings[i]), Float.valueOf(longitudeStrings[i]) };
+            distances[i] = GeoEncodingTest.distance(coords, origin);
+            order[i] = i;
+        }
+
+        for (int i = 1; i < n; ++i) {
+            float key = distances[i];
+            int shelter = order[i];
+            int j = i - 1;
+            while (j >= 0 && distances[j] > key) {
+                distances[j + 1] = distances[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            distances[j + 1] = key;
+            order[j + 1] = shelter;
+        }
+
+        int[] nearest = new int[Math.min(limit, n)];
+        System.arraycopy(order, 0, nearest, 0, nearest.length);
+        return nearest;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ShelterGridBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,146 @@
+package oz.rest.codecs;
+
+import com.mongodb.MongoClientSettings;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.io.BasicOutputBuffer;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Adopter;
+import oz.rest.models.GeoPoint;
+import oz.rest.models.Location;
+import oz.rest.models.Pet;
+import oz.rest.models.Shelter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import static org.junit.jupiter.api.Assertions.*;
+
+// the hand-written codecs have to agree with the pojo codec on the stored layout,
+// since documents already in the database were written by it
+class ModelCodecProviderTest {
+    final CodecRegistry pojo = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+            fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+    final CodecRegistry hand = fromRegistries(MongoClientSettings.getDefaultCodecRegistry(),
+            fromProviders(new ModelCodecProvider()));
+
+    <T> RawBsonDocument encode(Codec<T> codec, T value) {
+        BasicOutputBuffer buffer = new BasicOutputBuffer();
+        codec.encode(new BsonBinaryWriter(buffer), value, EncoderContext.builder().build());
+        return new RawBsonDocument(buffer.toByteArray());
+    }
+
+    <T> T decode(Codec<T> codec, RawBsonDocument document) {
+        return codec.decode(document.asBsonReader(), DecoderContext.builder().build());
+    }
+
+    @Test
+    void petLayoutMatchesPojoCodec() {
+        Pet pet = new Pet();
+        pet.setId(new ObjectId());
+        pet.setName("Mollie");
+        pet.setCurrentShelterId("Mollie3245");
+        pet.setImages(new ArrayList<>(List.of("a", "b")));
+        pet.setBreed("German Shephard");
+        pet.setAge(3);
+
+        assertEquals(encode(pojo.get(Pet.class), pet), encode(hand.get(Pet.class), pet));
+
+        Pet decoded = decode(hand.get(Pet.class), encode(pojo.get(Pet.class), pet));
+        assertEquals(pet.getId(), decoded.getId());
+        assertEquals("Mollie", decoded.getName());
+        assertEquals(List.of("a", "b"), decoded.getImages());
+        assertEquals(3, decoded.getAge());
+        assertNull(decoded.getColor());
+    }
+
+    @Test
+    void shelterLayoutMatchesPojoCodec() {
+        Location location = new Location();
+        location.setCity("Oswego");
+        location.setZipCode("13126");
+
+        Shelter shelter = new Shelter();
+        shelter.setName("Paws");
+        shelter.setPassword("password3");
+        shelter.setEmailAddress("paws@gmail.com");
+        shelter.setLocation(location);
+        shelter.setLatitude("43.45");
+
+        assertEquals(encode(pojo.get(Shelter.class), shelter), encode(hand.get(Shelter.class), shelter));
+
+        Shelter decoded = decode(hand.get(Shelter.class), encode(pojo.get(Shelter.class), shelter));
+        assertEquals("Oswego", decoded.getLocation().getCity());
+        assertEquals("password3", decoded.getPassword());
+        assertEquals("43.45", decoded.getLatitude());
+    }
+
+    @Test
+    void versionLayoutMatchesPojoCodec() {
+        Adopter adopter = new Adopter();
+        adopter.setId(new ObjectId());
+        adopter.setName("Greg");
+        adopter.setVersion(3L);
+        adopter.setLastModified(Instant.parse("2024-03-05T10:15:30.250Z"));
+
+        assertEquals(encode(pojo.get(Adopter.class), adopter), encode(hand.get(Adopter.class), adopter));
+
+        Adopter decoded = decode(hand.get(Adopter.class), encode(pojo.get(Adopter.class), adopter));
+        assertEquals(3L, decoded.getVersion());
+        assertEquals(adopter.getLastModified(), decoded.getLastModified());
+    }
+
+    @Test
+    void positionIsGeoJson() {
+        Shelter shelter = new Shelter();
+        shelter.setName("Paws");
+        shelter.setPosition(GeoPoint.of("43.45", "-76.5"));
+
+        RawBsonDocument document = encode(hand.get(Shelter.class), shelter);
+        assertEquals(encode(pojo.get(Shelter.class), shelter), document);
+        assertEquals(RawBsonDocument.parse("{\"type\": \"Point\", \"coordinates\": [-76.5, 43.45]}"),
+                document.getDocument("position"));
+
+        Shelter decoded = decode(hand.get(Shelter.class), document);
+        assertEquals(43.45, decoded.getPosition().latitude());
+        assertEquals(-76.5, decoded.getPosition().longitude());
+    }
+
+    @Test
+    void adopterKeepsStoredEmailName() {
+        Adopter adopter = new Adopter();
+        adopter.setName("Greg");
+        adopter.setEmailAddress("greg@gmail.com");
+
+        RawBsonDocument document = encode(hand.get(Adopter.class), adopter);
+        assertEquals(encode(pojo.get(Adopter.class), adopter), document);
+        assertEquals("greg@gmail.com", document.getString("email_address").getValue());
+    }
+
+    @Test
+    void unknownFieldsAreSkipped() {
+        RawBsonDocument document = RawBsonDocument.parse("{\"name\": \"Mollie\", \"legacy\": {\"a\": 1}, \"age\": 2}");
+
+        Pet decoded = decode(hand.get(Pet.class), document);
+        assertEquals("Mollie", decoded.getName());
+        assertEquals(2, decoded.getAge());
+    }
+
+    @Test
+    void idIsGeneratedForInserts() {
+        ModelCodec<Pet> codec = new PetCodec();
+        Pet pet = codec.generateIdIfAbsentFromDocument(new Pet());
+
+        assertTrue(codec.documentHasId(pet));
+        assertEquals(pet.getId(), codec.getDocumentId(pet).asObjectId().getValue());
+    }
+}
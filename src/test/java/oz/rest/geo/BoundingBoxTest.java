@@ -0,0 +1,60 @@
+package oz.rest.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundingBoxTest {
+    @Test
+    void holdsEveryPointInTheRadius() {
+        Random random = new Random(1);
+        int inside = 0;
+        for (int q = 0; q < 100_000; q++) {
+            double latitude = -90 + random.nextDouble() * 180;
+            double longitude = -180 + random.nextDouble() * 360;
+            double km = random.nextDouble() * 3000;
+            BoundingBox box = BoundingBox.around(latitude, longitude, km);
+
+            // somewhere near the center
+            double otherLatitude = Math.max(-90, Math.min(90, latitude - 30 + random.nextDouble() * 60));
+            double otherLongitude = BoundingBox.normalize(longitude - 60 + random.nextDouble() * 120);
+            if (Haversine.distanceKm(latitude, longitude, otherLatitude, otherLongitude) <= km) {
+                inside++;
+                assertTrue(box.contains(otherLatitude, otherLongitude));
+            }
+        }
+        // the test found enough points inside to mean something
+        assertTrue(inside > 1000);
+    }
+
+    @Test
+    void throwsOutFarPoints() {
+        BoundingBox box = BoundingBox.around(42.938, -74.192, 50);
+        assertTrue(box.contains(42.938, -74.192));
+        assertFalse(box.contains(34.1, -118.4));
+        assertFalse(box.contains(42.938, -70));
+        assertFalse(box.contains(44, -74.192));
+        assertFalse(box.allLongitudes());
+    }
+
+    @Test
+    void crossesTheAntimeridian() {
+        BoundingBox box = BoundingBox.around(0, 179.9, 100);
+        assertTrue(box.west() > box.east());
+        assertTrue(box.contains(0, -179.9));
+        assertTrue(box.contains(0, 179.5));
+        assertFalse(box.contains(0, 0));
+        assertTrue(box.intersects(-1, 1, -180, -179));
+        assertFalse(box.intersects(-1, 1, 10, 11));
+    }
+
+    @Test
+    void reachesThePole() {
+        BoundingBox box = BoundingBox.around(89.5, 0, 100);
+        assertTrue(box.allLongitudes());
+        assertTrue(box.contains(89.9, 180));
+        assertFalse(box.contains(80, 0));
+    }
+}
@@ -0,0 +1,59 @@
+package oz.rest.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoordinateCacheTest {
+    @Test
+    void packsBothCoordinates() {
+        long packed = CoordinateCache.pack(42.938f, -74.192f);
+        assertEquals(42.938f, CoordinateCache.latitude(packed));
+        assertEquals(-74.192f, CoordinateCache.longitude(packed));
+
+        packed = CoordinateCache.pack(-0.5f, 0f);
+        assertEquals(-0.5f, CoordinateCache.latitude(packed));
+        assertEquals(0f, CoordinateCache.longitude(packed));
+        assertNotEquals(CoordinateCache.MISSING, CoordinateCache.pack(Float.NaN, Float.NaN));
+    }
+
+    @Test
+    void missingCodes() {
+        CoordinateCache cache = new CoordinateCache(2);
+        assertEquals(CoordinateCache.MISSING, cache.get(12010));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsed() {
+        CoordinateCache cache = new CoordinateCache(2);
+        cache.put(1, 1, 1);
+        cache.put(2, 2, 2);
+        // 1 is now used more recently than 2
+        cache.get(1);
+        cache.put(3, 3, 3);
+
+        assertEquals(2, cache.size());
+        assertEquals(1f, CoordinateCache.latitude(cache.get(1)));
+        assertEquals(CoordinateCache.MISSING, cache.get(2));
+        assertEquals(3f, CoordinateCache.longitude(cache.get(3)));
+    }
+
+    @Test
+    void locatorCountsWhereLookupsWereAnswered() throws Exception {
+        ZipCodeLocator locator = new ZipCodeLocator(10);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipCentroids.write(out, new int[] { 12010 }, new float[] { 42.938f }, new float[] { -74.192f });
+        locator.setCentroids(ZipCentroids.read(ByteBuffer.wrap(out.toByteArray())));
+
+        assertArrayEquals(new float[] { 42.938f, -74.192f }, locator.coordinates("12010"));
+        // no token, so nothing else can be found
+        assertNull(locator.coordinates("99999"));
+        assertNull(locator.coordinates("nope"));
+
+        assertEquals(1, locator.getTableHits());
+        assertEquals(2, locator.getMisses());
+    }
+}
@@ -0,0 +1,68 @@
+package oz.rest.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HaversineTest {
+    @Test
+    void knownDistances() {
+        // New York to Los Angeles
+        assertEquals(3936, Haversine.distanceKm(40.7128, -74.0060, 34.0522, -118.2437), 1);
+        assertEquals(0, Haversine.distanceKm(42.938, -74.192, 42.938, -74.192));
+        // half way around
+        assertEquals(Math.PI * Haversine.EARTH_RADIUS_KM, Haversine.distanceKm(0, 0, 0, 180), 1e-6);
+    }
+
+    @Test
+    void batchAgreesWithOneAtATime() {
+        Random random = new Random(1);
+        // odd sizes so the vectorized batch has leftovers for the scalar loop
+        for (int size : new int[] { 0, 1, 3, 17, 1001 }) {
+            double[] latitudes = new double[size];
+            double[] longitudes = new double[size];
+            for (int i = 0; i < size; i++) {
+                latitudes[i] = -90 + random.nextDouble() * 180;
+                longitudes[i] = -180 + random.nextDouble() * 360;
+            }
+
+            double[] distances = Haversine.distancesKm(42.938, -74.192, latitudes, longitudes);
+            for (int i = 0; i < size; i++) {
+                assertEquals(Haversine.distanceKm(42.938, -74.192, latitudes[i], longitudes[i]), distances[i], 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void rangesStartAtTheBeginningOfOut() {
+        double[] latitudes = { 0, 10, 20, 30, 40 };
+        double[] longitudes = { 0, 0, 0, 0, 0 };
+        double[] out = new double[3];
+
+        Haversine.distancesKm(0, 0, latitudes, longitudes, 1, 4, out);
+        assertEquals(Haversine.distanceKm(0, 0, 10, 0), out[0], 1e-6);
+        assertEquals(Haversine.distanceKm(0, 0, 30, 0), out[2], 1e-6);
+
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> Haversine.distancesKm(0, 0, latitudes, longitudes, 0, 5, out));
+    }
+
+    @Test
+    void scalarKernelMatchesTheOneInUse() {
+        double[] latitudes = new double[37];
+        double[] longitudes = new double[37];
+        for (int i = 0; i < latitudes.length; i++) {
+            latitudes[i] = -80 + i * 4.3;
+            longitudes[i] = 170 - i * 9.1;
+        }
+        double[] scalar = new double[37];
+        Haversine.SCALAR.distancesKm(-33.9, 151.2, latitudes, longitudes, 0, 37, scalar, 0);
+
+        double[] batch = Haversine.distancesKm(-33.9, 151.2, latitudes, longitudes);
+        for (int i = 0; i < scalar.length; i++) {
+            assertEquals(scalar[i], batch[i], 1e-6);
+        }
+    }
+}
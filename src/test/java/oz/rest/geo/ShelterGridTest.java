@@ -0,0 +1,146 @@
+package oz.rest.geo;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShelterGridTest {
+    ObjectId[] ids;
+    double[] latitudes;
+    double[] longitudes;
+
+    ShelterGrid random(int size, long seed, double minLatitude, double maxLatitude) {
+        Random random = new Random(seed);
+        ids = new ObjectId[size];
+        latitudes = new double[size];
+        longitudes = new double[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = new ObjectId();
+            latitudes[i] = minLatitude + random.nextDouble() * (maxLatitude - minLatitude);
+            longitudes[i] = -180 + random.nextDouble() * 360;
+        }
+        return ShelterGrid.of(ids, latitudes, longitudes);
+    }
+
+    // every shelter sorted by distance, what the grid has to agree with
+    List<ShelterGrid.Neighbor> scan(double latitude, double longitude, int limit, double maxKm) {
+        return IntStream.range(0, ids.length)
+                .mapToObj(i -> new ShelterGrid.Neighbor(ids[i],
+                        Haversine.distanceKm(latitude, longitude, latitudes[i], longitudes[i])))
+                .filter(n -> n.distanceKm() <= maxKm)
+                .sorted(Comparator.comparingDouble(ShelterGrid.Neighbor::distanceKm))
+                .limit(limit)
+                .toList();
+    }
+
+    void assertSameDistances(List<ShelterGrid.Neighbor> expected, List<ShelterGrid.Neighbor> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).distanceKm(), actual.get(i).distanceKm(), 1e-9);
+        }
+    }
+
+    @Test
+    void agreesWithAScan() {
+        ShelterGrid grid = random(5000, 1, -90, 90);
+        Random random = new Random(2);
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = -90 + random.nextDouble() * 180;
+            double longitude = -180 + random.nextDouble() * 360;
+            int limit = 1 + random.nextInt(30);
+            assertSameDistances(scan(latitude, longitude, limit, Double.POSITIVE_INFINITY),
+                    grid.nearest(latitude, longitude, limit, Double.POSITIVE_INFINITY));
+        }
+    }
+
+    @Test
+    void agreesWithAScanWithinARadius() {
+        ShelterGrid grid = random(5000, 3, 24, 50);
+        Random random = new Random(4);
+
+        for (int q = 0; q < 200; q++) {
+            double latitude = 24 + random.nextDouble() * 26;
+            double longitude = -180 + random.nextDouble() * 360;
+            double radius = random.nextDouble() * 1000;
+            assertSameDistances(scan(latitude, longitude, 100, radius), grid.nearest(latitude, longitude, 100, radius));
+        }
+    }
+
+    @Test
+    void polesAndTheAntimeridian() {
+        ShelterGrid grid = random(2000, 5, 80, 90);
+
+        for (double[] origin : new double[][] { { 90, 0 }, { 89.9, 179.9 }, { 85, -180 }, { -90, 0 } }) {
+            assertSameDistances(scan(origin[0], origin[1], 10, Double.POSITIVE_INFINITY),
+                    grid.nearest(origin[0], origin[1], 10, Double.POSITIVE_INFINITY));
+            // the radius's box wraps or holds every longitude here
+            assertSameDistances(scan(origin[0], origin[1], 2000, 500),
+                    grid.nearest(origin[0], origin[1], 2000, 500));
+        }
+    }
+
+    @Test
+    void fewerSheltersThanTheLimit() {
+        ShelterGrid grid = random(3, 6, -10, 10);
+
+        List<ShelterGrid.Neighbor> nearest = grid.nearest(0, 0, 10, Double.POSITIVE_INFINITY);
+        assertEquals(3, nearest.size());
+        assertTrue(nearest.get(0).distanceKm() <= nearest.get(1).distanceKm());
+        assertTrue(ShelterGrid.EMPTY.nearest(0, 0, 10, Double.POSITIVE_INFINITY).isEmpty());
+    }
+
+    @Test
+    void withAndWithout() {
+        ObjectId near = new ObjectId();
+        ObjectId far = new ObjectId();
+        ShelterGrid grid = ShelterGrid.EMPTY
+                .with(near, 42.9, -74.2)
+                .with(far, 34.1, -118.4);
+        assertEquals(2, grid.size());
+        assertEquals(near, grid.nearest(42.9, -74.2, 1, Double.POSITIVE_INFINITY).get(0).id());
+
+        // moving the far one next to the origin
+        grid = grid.with(far, 42.9, -74.2001);
+        assertEquals(2, grid.size());
+        assertEquals(2, grid.nearest(42.9, -74.2, 2, 1).size());
+
+        grid = grid.without(near);
+        assertEquals(1, grid.size());
+        assertEquals(far, grid.nearest(42.9, -74.2, 5, Double.POSITIVE_INFINITY).get(0).id());
+        assertSame(grid, grid.without(near));
+    }
+
+    @Test
+    void boundNeverOverestimates() {
+        Random random = new Random(7);
+        for (int q = 0; q < 10_000; q++) {
+            double latitude = -90 + random.nextDouble() * 180;
+            double longitude = -180 + random.nextDouble() * 360;
+            double otherLatitude = -90 + random.nextDouble() * 180;
+            double otherLongitude = -180 + random.nextDouble() * 360;
+            int row = ShelterGrid.row(latitude);
+            int column = ShelterGrid.column(longitude);
+
+            int rows = Math.abs(ShelterGrid.row(otherLatitude) - row);
+            int columns = Math.abs(ShelterGrid.column(otherLongitude) - column);
+            columns = Math.min(columns, ShelterGrid.COLUMNS - columns);
+            // the other point is outside every ring smaller than this one
+            int ring = Math.max(rows, columns);
+            if (ring == 0) {
+                continue;
+            }
+
+            assertTrue(ShelterGrid.lowerBoundOutside(row, column, ring - 1, latitude, longitude)
+                    <= Haversine.distanceKm(latitude, longitude, otherLatitude, otherLongitude) + 1e-9,
+                    Arrays.toString(new double[] { latitude, longitude, otherLatitude, otherLongitude }));
+        }
+    }
+}
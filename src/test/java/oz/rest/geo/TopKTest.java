@@ -0,0 +1,76 @@
+package oz.rest.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TopKTest {
+    @Test
+    void keepsTheSmallestInOrder() {
+        Random random = new Random(1);
+        for (int capacity : new int[] { 1, 2, 10, 100 }) {
+            double[] offered = new double[1000];
+            TopK top = new TopK(capacity);
+            for (int i = 0; i < offered.length; i++) {
+                offered[i] = random.nextDouble() * 1000;
+                top.offer(offered[i], i);
+            }
+            top.sort();
+
+            double[] expected = offered.clone();
+            Arrays.sort(expected);
+            assertEquals(capacity, top.size());
+            for (int i = 0; i < capacity; i++) {
+                assertEquals(expected[i], top.distance(i));
+                assertEquals(expected[i], offered[top.slot(i)]);
+            }
+        }
+    }
+
+    @Test
+    void fewerOffersThanTheCapacity() {
+        TopK top = new TopK(10);
+        top.offer(3, 0);
+        top.offer(1, 1);
+        top.offer(2, 2);
+        assertFalse(top.isFull());
+        assertEquals(3, top.max());
+
+        top.sort();
+        assertEquals(3, top.size());
+        assertEquals(1, top.slot(0));
+        assertEquals(2, top.slot(1));
+        assertEquals(0, top.slot(2));
+    }
+
+    @Test
+    void maxIsTheOneToBeat() {
+        TopK top = new TopK(2);
+        top.offer(5, 0);
+        top.offer(7, 1);
+        assertTrue(top.isFull());
+        assertEquals(7, top.max());
+
+        top.offer(9, 2);
+        assertEquals(7, top.max());
+        top.offer(1, 3);
+        assertEquals(5, top.max());
+    }
+
+    @Test
+    void sortingEndsTheOffers() {
+        TopK top = new TopK(2);
+        top.offer(1, 0);
+        assertThrows(IllegalStateException.class, () -> top.distance(0));
+
+        top.sort();
+        assertThrows(IllegalStateException.class, () -> top.offer(2, 1));
+
+        top.clear();
+        top.offer(2, 1);
+        assertEquals(0, new TopK(0).size());
+    }
+}
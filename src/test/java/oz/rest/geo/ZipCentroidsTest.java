@@ -0,0 +1,114 @@
+package oz.rest.geo;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZipCentroidsTest {
+    ZipCentroids table(int[] codes, float[] latitudes, float[] longitudes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipCentroids.write(out, codes, latitudes, longitudes);
+        return ZipCentroids.read(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    void findsTheCoordinatesOfEachCode() throws IOException {
+        // not sorted on purpose
+        ZipCentroids table = table(
+                new int[] { 90210, 501, 12010 },
+                new float[] { 34.1f, 40.8f, 42.9f },
+                new float[] { -118.4f, -73.0f, -74.2f });
+
+        assertEquals(3, table.size());
+
+        int index = table.indexOf("12010");
+        assertTrue(index >= 0);
+        assertEquals(42.9f, table.latitude(index));
+        assertEquals(-74.2f, table.longitude(index));
+
+        index = table.indexOf("00501");
+        assertEquals(40.8f, table.latitude(index));
+        assertEquals(-73.0f, table.longitude(index));
+
+        assertEquals(table.indexOf("90210"), table.indexOf("90210-1234"));
+    }
+
+    @Test
+    void unknownCodesAreMissing() throws IOException {
+        ZipCentroids table = table(new int[] { 12010 }, new float[] { 42.9f }, new float[] { -74.2f });
+
+        assertEquals(-1, table.indexOf("12011"));
+        assertEquals(-1, table.indexOf(""));
+        assertEquals(-1, table.indexOf(null));
+        assertEquals(-1, ZipCentroids.EMPTY.indexOf("12010"));
+    }
+
+    @Test
+    void parsesOnlyZipCodes() {
+        assertEquals(12010, ZipCentroids.parse(" 12010 "));
+        assertEquals(501, ZipCentroids.parse("00501"));
+        assertEquals(12010, ZipCentroids.parse("12010-0001"));
+        assertEquals(-1, ZipCentroids.parse("1201"));
+        assertEquals(-1, ZipCentroids.parse("120100"));
+        assertEquals(-1, ZipCentroids.parse("12a10"));
+        assertEquals(-1, ZipCentroids.parse("-1201"));
+    }
+
+    @Test
+    void rejectsDuplicatesAndBrokenFiles() throws IOException {
+        assertThrows(IllegalArgumentException.class,
+                () -> table(new int[] { 1, 1 }, new float[] { 0, 0 }, new float[] { 0, 0 }));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ZipCentroids.write(out, new int[] { 1, 2 }, new float[] { 0, 0 }, new float[] { 0, 0 });
+        byte[] bytes = out.toByteArray();
+
+        assertThrows(IOException.class, () -> ZipCentroids.read(ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length - 1))));
+        assertThrows(IOException.class, () -> ZipCentroids.read(ByteBuffer.wrap(new byte[] { 1, 2, 3 })));
+    }
+
+    @Test
+    void convertsAndMapsGazetteerFiles() throws IOException {
+        Path input = Files.createTempFile("zcta", ".txt");
+        Path output = Files.createTempFile("zip-centroids", ".bin");
+        // mapped files can't be deleted on windows until they're unmapped
+        output.toFile().deleteOnExit();
+        try {
+            Files.writeString(input,
+                    "GEOID\tALAND\tAWATER\tALAND_SQMI\tAWATER_SQMI\tINTPTLAT\tINTPTLONG                                                                                                               \n"
+                            + "12010\t1\t1\t1\t1\t42.938\t-74.192\n"
+                            + "00601\t1\t1\t1\t1\t18.180555\t-66.749961\n");
+
+            assertEquals(2, ZipCentroidsConverter.convert(input, output));
+
+            ZipCentroids table = ZipCentroids.map(output);
+            assertEquals(2, table.size());
+            assertEquals(18.180555f, table.latitude(table.indexOf("00601")));
+            assertEquals(-74.192f, table.longitude(table.indexOf("12010")));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    void convertsCsvFiles() throws IOException {
+        Path input = Files.createTempFile("zips", ".csv");
+        Path output = Files.createTempFile("zip-centroids", ".bin");
+        output.toFile().deleteOnExit();
+        try {
+            Files.writeString(input, "\"zip\",\"lat\",\"lng\"\n\"12010\",\"42.938\",\"-74.192\"\n\n");
+
+            assertEquals(1, ZipCentroidsConverter.convert(input, output));
+            assertEquals(42.938f, ZipCentroids.map(output).latitude(0));
+        } finally {
+            Files.delete(input);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package oz.rest.monitoring;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryShapeTest {
+    @Test
+    void valuesAreStripped() {
+        String first = QueryShape.of("find", BsonDocument.parse(
+                "{find: 'Pets', filter: {type: {$in: ['Dog', 'Cat']}, age: {$gte: 2}}, sort: {age: 1}, limit: 11}"));
+        String second = QueryShape.of("find", BsonDocument.parse(
+                "{find: 'Pets', filter: {type: {$in: ['Bird']}, age: {$gte: 7}}, sort: {age: 1}, limit: 3}"));
+
+        assertEquals(first, second);
+        assertFalse(first.contains("Dog"));
+        assertTrue(first.startsWith("find Pets"));
+        assertTrue(first.contains("limit"));
+    }
+
+    @Test
+    void differentFieldsAreDifferentShapes() {
+        String byType = QueryShape.of("find", BsonDocument.parse("{find: 'Pets', filter: {type: 'Dog'}}"));
+        String byBreed = QueryShape.of("find", BsonDocument.parse("{find: 'Pets', filter: {breed: 'Dog'}}"));
+
+        assertNotEquals(byType, byBreed);
+    }
+
+    @Test
+    void sortDirectionIsKept() {
+        String ascending = QueryShape.of("find", BsonDocument.parse("{find: 'Pets', sort: {age: 1}}"));
+        String descending = QueryShape.of("find", BsonDocument.parse("{find: 'Pets', sort: {age: -1}}"));
+
+        assertNotEquals(ascending, descending);
+    }
+
+    @Test
+    void percentilesAreBucketed() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1_000_000);
+        }
+        histogram.record(500_000_000);
+
+        assertEquals(100, histogram.getCount());
+        assertTrue(histogram.percentileMillis(50) <= 2.1);
+        assertEquals(500, histogram.percentileMillis(100), 0.001);
+    }
+}
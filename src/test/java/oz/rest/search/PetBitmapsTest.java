@@ -0,0 +1,119 @@
+package oz.rest.search;
+
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Pet;
+import oz.rest.services.PetFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PetBitmapsTest {
+    PetBitmaps bitmaps;
+    List<Pet> pets;
+
+    @BeforeEach
+    void setUp() {
+        bitmaps = new PetBitmaps();
+        pets = new ArrayList<>();
+
+        // dogs are the even ones, females every third
+        for (int i = 0; i < 30; i++) {
+            Pet pet = pet(i % 2 == 0 ? "Dog" : "Cat", i % 3 == 0 ? "Female" : "Male", i % 15);
+            pets.add(pet);
+            bitmaps.put(pet);
+        }
+    }
+
+    Pet pet(String type, String sex, Integer age) {
+        Pet pet = new Pet();
+        pet.setId(new ObjectId());
+        pet.setType(type);
+        pet.setSex(sex);
+        pet.setSize("Large");
+        pet.setAge(age);
+        return pet;
+    }
+
+    PetFilter filter(List<String> type, Integer minAge, Integer maxAge, String sex) {
+        return new PetFilter(null, null, type, null, null, null, minAge, maxAge, sex, null);
+    }
+
+    @Test
+    void andsTheFilters() {
+        // i % 6 == 0: 0, 6, 12, 18, 24
+        assertEquals(5, bitmaps.count(filter(List.of("Dog"), null, null, "Female")));
+        assertEquals(15, bitmaps.count(filter(List.of("Dog", "Bird"), null, null, null)));
+        assertEquals(30, bitmaps.count(filter(List.of("Dog", "Cat"), null, null, null)));
+        assertEquals(0, bitmaps.count(filter(List.of("Bird"), null, null, null)));
+    }
+
+    @Test
+    void agesAreARange() {
+        // ages 2, 3, 4 twice each
+        assertEquals(6, bitmaps.count(filter(null, 2, 4, null)));
+        assertEquals(8, bitmaps.count(filter(null, 11, null, null)));
+    }
+
+    @Test
+    void upsideDownAgesMatchNothing() {
+        assertEquals(0, bitmaps.count(filter(null, 5, 2, null)));
+        assertEquals(List.of(), bitmaps.page(filter(List.of("Dog"), 5, 2, null), null, 10));
+    }
+
+    @Test
+    void pagesAreInIdOrder() {
+        PetFilter dogs = filter(List.of("Dog"), null, null, null);
+
+        List<ObjectId> first = bitmaps.page(dogs, null, 3);
+        assertEquals(List.of(pets.get(0).getId(), pets.get(2).getId(), pets.get(4).getId()), first);
+
+        List<ObjectId> second = bitmaps.page(dogs, first.get(2), 3);
+        assertEquals(List.of(pets.get(6).getId(), pets.get(8).getId(), pets.get(10).getId()), second);
+    }
+
+    @Test
+    void followsUpdatesAndDeletes() {
+        Pet first = pets.get(0);
+        first.setType("Cat");
+        bitmaps.put(first);
+        bitmaps.remove(pets.get(2).getId());
+
+        assertEquals(13, bitmaps.count(filter(List.of("Dog"), null, null, null)));
+        assertEquals(16, bitmaps.count(filter(List.of("Cat"), null, null, null)));
+        // the deleted pet's id still finds its place in the order
+        assertEquals(List.of(pets.get(4).getId()), bitmaps.page(filter(List.of("Dog"), null, null, null),
+                pets.get(2).getId(), 1));
+    }
+
+    @Test
+    void outOfOrderIdsAreNotPaged() {
+        Pet older = pet("Dog", "Male", 1);
+        older.setId(new ObjectId(pets.get(0).getId().getDate(), 0));
+        bitmaps.put(older);
+
+        assertFalse(bitmaps.supports(new PetFilter()));
+    }
+
+    @Test
+    void namesAndTextGoToMongo() {
+        PetFilter text = new PetFilter();
+        text.setQ("calm");
+
+        assertTrue(bitmaps.supports(new PetFilter()));
+        assertFalse(bitmaps.supports(text));
+        assertFalse(bitmaps.supports(new PetFilter("Mollie", null, null, null, null, null, null, null, null, null)));
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        for (int i = 0; i < 5000; i++) {
+            bitmaps.put(pet("Bird", "Male", 1));
+        }
+
+        assertEquals(5000, bitmaps.count(filter(List.of("Bird"), null, null, null)));
+    }
+}
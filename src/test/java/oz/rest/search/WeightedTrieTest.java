@@ -0,0 +1,92 @@
+package oz.rest.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedTrieTest {
+    WeightedTrie trie;
+
+    @BeforeEach
+    void setUp() {
+        trie = new WeightedTrie();
+        add("Labrador", 5);
+        add("Lab Mix", 2);
+        add("Lhasa Apso", 1);
+        add("Beagle", 3);
+    }
+
+    void add(String term, int times) {
+        for (int i = 0; i < times; i++) {
+            trie = trie.with(term, 1);
+        }
+    }
+
+    List<String> values(String prefix) {
+        return trie.complete(prefix, 10).stream().map(WeightedTrie.Suggestion::value).toList();
+    }
+
+    @Test
+    void heaviestFirst() {
+        assertEquals(List.of("Labrador", "Lab Mix", "Lhasa Apso"), values("l"));
+        assertEquals(List.of("Labrador", "Lab Mix"), values("LAB"));
+        assertEquals(5, trie.complete("lab", 1).get(0).weight());
+    }
+
+    @Test
+    void unknownPrefixHasNoSuggestions() {
+        assertEquals(List.of(), values("poodle"));
+    }
+
+    @Test
+    void emptyPrefixSuggestsEverything() {
+        assertEquals(List.of("Labrador", "Beagle", "Lab Mix", "Lhasa Apso"), values(""));
+    }
+
+    @Test
+    void weightsGoDownAndTermsGoAway() {
+        trie = trie.with("labrador", -4);
+        assertEquals(List.of("Lab Mix", "Labrador", "Lhasa Apso"), values("l"));
+
+        trie = trie.with("Labrador", -1);
+        assertEquals(List.of("Lab Mix", "Lhasa Apso"), values("l"));
+        assertEquals(0, trie.weight("Labrador"));
+        assertEquals(3, trie.size());
+    }
+
+    @Test
+    void removingUnknownTermsIsIgnored() {
+        trie = trie.with("Poodle", -1);
+        assertEquals(0, trie.weight("Poodle"));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void earlierTriesDontChange() {
+        WeightedTrie before = trie;
+        trie = trie.with("Labradoodle", 9);
+
+        assertEquals(List.of("Labradoodle", "Labrador", "Lab Mix"), values("lab"));
+        assertEquals(List.of("Labrador", "Lab Mix"),
+                before.complete("lab", 10).stream().map(WeightedTrie.Suggestion::value).toList());
+        assertEquals(4, before.size());
+    }
+
+    @Test
+    void keepsOnlyTheTopTen() {
+        for (int i = 0; i < 30; i++) {
+            add("Mollie" + i, i + 1);
+        }
+
+        List<String> top = values("mollie");
+        assertEquals(WeightedTrie.MAX_SUGGESTIONS, top.size());
+        assertEquals("Mollie29", top.get(0));
+
+        // knocking the heaviest out brings the eleventh back in
+        trie = trie.with("Mollie29", -30);
+        assertEquals("Mollie19", values("mollie").get(9));
+    }
+}
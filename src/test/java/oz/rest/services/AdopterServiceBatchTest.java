@@ -0,0 +1,86 @@
+package oz.rest.services;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonString;
+import jakarta.ws.rs.core.Response;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Adopter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdopterServiceBatchTest extends AdopterServiceTest {
+    List<String> addAll(String... names) {
+        List<String> ids = new ArrayList<>();
+        for (String name : names) {
+            Adopter adopter = createAdopter(name, name.toLowerCase() + "@gmail.com");
+            adopterService.add(adopter).close();
+            ids.add(adopter.getId().toHexString());
+        }
+        return ids;
+    }
+
+    JsonObject read(Response response) {
+        return Json.createReader(new StringReader(readEntity(response))).readObject();
+    }
+
+    @Test
+    void returnsThemInTheOrderAskedFor() {
+        List<String> ids = addAll("Greg", "Linda", "Jane");
+
+        try (Response response = adopterService.retrieveMany(List.of(ids.get(2), ids.get(0), ids.get(1)))) {
+            assertEquals(200, response.getStatus());
+            JsonArray items = read(response).getJsonArray("items");
+
+            assertEquals(3, items.size());
+            assertEquals("Jane", items.getJsonObject(0).getString("name"));
+            assertEquals("Greg", items.getJsonObject(1).getString("name"));
+            assertEquals(ids.get(0), items.getJsonObject(1).getString("id"));
+        }
+    }
+
+    @Test
+    void reportsMissingIds() {
+        List<String> ids = addAll("Greg");
+
+        try (Response response = adopterService.retrieveMany(List.of(validAdopterId, ids.get(0)))) {
+            JsonObject body = read(response);
+
+            assertEquals(1, body.getJsonArray("items").size());
+            assertEquals(List.of(validAdopterId), body.getJsonArray("missing").getValuesAs(
+                    JsonString::getString));
+        }
+    }
+
+    @Test
+    void rejectsEveryInvalidId() {
+        try (Response response = adopterService.retrieveMany(List.of(invalidAdopterId, validAdopterId, "nope"))) {
+            assertEquals(400, response.getStatus());
+            assertEquals(2, Json.createReader(new StringReader(readEntity(response))).readArray().size());
+        }
+    }
+
+    @Test
+    void rejectsNoIds() {
+        try (Response response = adopterService.retrieveMany(List.of())) {
+            assertEquals(400, response.getStatus());
+        }
+    }
+
+    @Test
+    void findTakesCommaSeparatedIds() {
+        List<String> ids = addAll("Greg", "Linda");
+
+        try (Response response = adopterService.find(null, null, null, null, ids.get(1) + "," + ids.get(0))) {
+            JsonArray items = read(response).getJsonArray("items");
+
+            assertEquals("Linda", items.getJsonObject(0).getString("name"));
+            assertEquals("Greg", items.getJsonObject(1).getString("name"));
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class AdopterServiceFindRemoveTest extends AdopterServiceTest {
             assertEquals(200, response.getStatus());
 
             List<Adopter> results = new ArrayList<>();
-            List<Document> docs = jsonb.fromJson((String) response.getEntity(),
+            List<Document> docs = jsonb.fromJson(readEntity(response),
                     new ArrayList<Document>(){}.getClass().getGenericSuperclass());
             for (Document doc : docs) {
                 results.add(fromDocument(doc));
@@ -1,9 +1,12 @@
 package oz.rest.services;
 
 import com.mongodb.MongoWriteException;
+import com.mongodb.client.model.IndexOptions;
 import jakarta.ws.rs.core.Response;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.Test;
+import oz.rest.IndexBootstrap;
 import oz.rest.models.Adopter;
 
 import java.util.List;
@@ -210,4 +213,20 @@ public class AdopterServiceOthersTest extends AdopterServiceTest {
     }
 
     // TC#a.6.6 omitted for the same reason as TC#a.1.1
+
+    @Test
+    void staleEmailIndexIsDropped() {
+        // what older versions made, it only ever sees null so a second adopter breaks it
+        collection.createIndex(new Document("emailAddress", 1), new IndexOptions().unique(true));
+        IndexBootstrap.dropIndex(db.getCollection("Adopters"), "emailAddress_1");
+        // and there's nothing to drop the second time
+        IndexBootstrap.dropIndex(db.getCollection("Adopters"), "emailAddress_1");
+
+        try (Response response = adopterService.add(createAdopter("Greg", "greg@gmail.com"))) {
+            assertEquals(200, response.getStatus());
+        }
+        try (Response response = adopterService.add(createAdopter("Linda", "linda@gmail.com"))) {
+            assertEquals(200, response.getStatus());
+        }
+    }
 }
@@ -0,0 +1,95 @@
+package oz.rest.services;
+
+import jakarta.json.Json;
+import jakarta.ws.rs.core.Response;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Adopter;
+
+import java.io.StringReader;
+
+import static com.mongodb.client.model.Filters.eq;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdopterServicePatchTest extends AdopterServiceTest {
+    String addGreg() {
+        Adopter adopter = copy(ANominal);
+        adopterService.add(adopter).close();
+        return adopter.getId().toHexString();
+    }
+
+    Adopter stored(String id) {
+        return db.getCollection("Adopters", Adopter.class).find(eq("_id", new ObjectId(id))).first();
+    }
+
+    @Test
+    void changesOnlyTheGivenFields() {
+        String id = addGreg();
+
+        try (Response response = adopterService.patch(id, Json.createObjectBuilder().add("name", "Gregory").build())) {
+            assertEquals(200, response.getStatus());
+            assertEquals("Gregory", readBody(response).getName());
+        }
+
+        Adopter adopter = stored(id);
+        assertEquals("Gregory", adopter.getName());
+        assertEquals(ANominal.getEmailAddress(), adopter.getEmailAddress());
+    }
+
+    @Test
+    void nullRemovesAField() {
+        String id = addGreg();
+
+        try (Response response = adopterService.patch(id, Json.createObjectBuilder().addNull("name").build())) {
+            assertEquals(200, response.getStatus());
+        }
+
+        assertNull(stored(id).getName());
+    }
+
+    @Test
+    void validatesTheChangedFields() {
+        String id = addGreg();
+
+        try (Response response = adopterService.patch(id,
+                Json.createObjectBuilder().add("emailAddress", "jimbo").build())) {
+            assertEquals(400, response.getStatus());
+        }
+
+        assertEquals(ANominal.getEmailAddress(), stored(id).getEmailAddress());
+    }
+
+    @Test
+    void rejectsUnknownFieldsAndTheId() {
+        String id = addGreg();
+
+        try (Response response = adopterService.patch(id,
+                Json.createObjectBuilder().add("nickname", "G").add("id", validAdopterId).build())) {
+            assertEquals(400, response.getStatus());
+            assertEquals(2, Json.createReader(new StringReader(readEntity(response))).readArray().size());
+        }
+    }
+
+    @Test
+    void duplicateEmailIsAConflict() {
+        String id = addGreg();
+        adopterService.add(createAdopter("Linda", "linda@gmail.com")).close();
+
+        try (Response response = adopterService.patch(id,
+                Json.createObjectBuilder().add("emailAddress", "linda@gmail.com").build())) {
+            assertEquals(409, response.getStatus());
+        }
+    }
+
+    @Test
+    void missingAndInvalidIds() {
+        try (Response response = adopterService.patch(validAdopterId,
+                Json.createObjectBuilder().add("name", "Greg").build())) {
+            assertEquals(404, response.getStatus());
+        }
+        try (Response response = adopterService.patch(invalidAdopterId,
+                Json.createObjectBuilder().add("name", "Greg").build())) {
+            assertEquals(400, response.getStatus());
+        }
+    }
+}
@@ -11,6 +11,7 @@ import jakarta.json.bind.JsonbBuilder;
 import jakarta.validation.Validation;
 import jakarta.validation.ValidatorFactory;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -23,6 +24,10 @@ import oz.rest.models.Adopter;
 
 import oz.rest.models.Shelter;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Supplier;
@@ -115,7 +120,21 @@ class AdopterServiceTest {
     }
 
     Adopter readBody(Response response) {
-        return fromDocument(Document.parse((String) response.getEntity()));
+        return fromDocument(Document.parse(readEntity(response)));
+    }
+
+    // find() streams its results, so render them the same way the container would
+    String readEntity(Response response) {
+        if (response.getEntity() instanceof StreamingOutput output) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                output.write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+        return (String) response.getEntity();
     }
 
     Adopter fromDocument(Document doc) {
@@ -0,0 +1,114 @@
+package oz.rest.services;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoServerException;
+import com.mongodb.ServerAddress;
+import jakarta.json.Json;
+import jakarta.ws.rs.core.Response;
+import org.bson.BsonDocument;
+import org.bson.BsonDouble;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Adopter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdopterServiceVersionTest extends AdopterServiceTest {
+    Adopter addGreg() {
+        Adopter adopter = copy(ANominal);
+        adopterService.add(adopter).close();
+        return adopter;
+    }
+
+    @Test
+    void everyWriteBumpsTheVersion() {
+        Adopter adopter = addGreg();
+        String id = adopter.getId().toHexString();
+        assertEquals(1, (long) adopter.getVersion());
+        assertNotNull(adopter.getLastModified());
+
+        Adopter changed = createAdopter("Gregory", ANominal.getEmailAddress());
+        // whatever the client sends is ignored
+        changed.setVersion(42L);
+        try (Response response = adopterService.update(changed, id)) {
+            assertEquals(2, (long) readBody(response).getVersion());
+        }
+
+        try (Response response = adopterService.patch(id, Json.createObjectBuilder().add("name", "Greg").build())) {
+            assertEquals(3, (long) readBody(response).getVersion());
+        }
+    }
+
+    @Test
+    void versionCantBePatched() {
+        String id = addGreg().getId().toHexString();
+
+        try (Response response = adopterService.patch(id, Json.createObjectBuilder().add("version", 7).build())) {
+            assertEquals(400, response.getStatus());
+        }
+    }
+
+    @Test
+    void retrieveSendsTheValidators() {
+        String id = addGreg().getId().toHexString();
+
+        try (Response response = adopterService.retrieve(id)) {
+            assertEquals(200, response.getStatus());
+            assertEquals("\"1\"", response.getHeaderString("ETag"));
+            assertNotNull(response.getHeaderString("Last-Modified"));
+        }
+    }
+
+    @Test
+    void currentCopiesAreNotModified() {
+        Adopter adopter = addGreg();
+        String id = adopter.getId().toHexString();
+
+        try (Response response = adopterService.retrieve(id, "\"1\"", null)) {
+            assertEquals(304, response.getStatus());
+            assertNull(response.getEntity());
+            assertEquals("\"1\"", response.getHeaderString("ETag"));
+        }
+
+        String since = Preconditions.httpDate(adopter.getLastModified());
+        try (Response response = adopterService.retrieve(id, null, since)) {
+            assertEquals(304, response.getStatus());
+        }
+    }
+
+    @Test
+    void staleCopiesGetTheNewVersion() {
+        String id = addGreg().getId().toHexString();
+        adopterService.patch(id, Json.createObjectBuilder().add("name", "Gregory").build()).close();
+
+        try (Response response = adopterService.retrieve(id, "\"1\"", null)) {
+            assertEquals(200, response.getStatus());
+            assertEquals("\"2\"", response.getHeaderString("ETag"));
+            assertEquals("Gregory", readBody(response).getName());
+        }
+    }
+
+    @Test
+    void missingIsStillNotFound() {
+        try (Response response = adopterService.retrieve(validAdopterId, "\"1\"", null)) {
+            assertEquals(404, response.getStatus());
+        }
+    }
+
+    MongoServerException serverError(int code, String message) {
+        return new MongoCommandException(new BsonDocument("ok", new BsonDouble(0))
+                .append("code", new BsonInt32(code))
+                .append("errmsg", new BsonString(message)), new ServerAddress());
+    }
+
+    @Test
+    void onlyAMissingIndexFallsBack() {
+        // the tests never build the version index, so the conditional gets above
+        // already went through the fallback against the real server
+        assertTrue(AbstractService.isBadHint(serverError(2,
+                "error processing query: planner returned error :: caused by :: hint provided does not correspond to an existing index")));
+        assertFalse(AbstractService.isBadHint(serverError(13, "not authorized on test to execute command")));
+        assertFalse(AbstractService.isBadHint(serverError(50, "operation exceeded time limit")));
+    }
+}
@@ -0,0 +1,52 @@
+package oz.rest.services;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageTokenTest {
+    @Test
+    void roundTripsThroughEncode() {
+        ObjectId id = new ObjectId();
+        PageToken token = PageToken.decode(PageToken.after("age", new BsonInt32(3), id).encode());
+
+        assertTrue(token.isSortedBy("age"));
+        assertFalse(token.isSortedBy(null));
+        assertEquals(PageToken.after("age", new BsonInt32(3), id).filter().toBsonDocument(),
+                token.filter().toBsonDocument());
+    }
+
+    @Test
+    void idOnlyTokenSeeksPastTheLastId() {
+        ObjectId id = new ObjectId();
+        BsonDocument filter = PageToken.decode(PageToken.after(null, null, id).encode()).filter().toBsonDocument();
+
+        assertEquals(BsonDocument.parse("{\"_id\": {\"$gt\": {\"$oid\": \"" + id.toHexString() + "\"}}}"), filter);
+    }
+
+    @Test
+    void tokenIsUrlSafe() {
+        String token = PageToken.after("name", null, new ObjectId()).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void garbageIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("not a token"));
+        assertThrows(IllegalArgumentException.class, () -> PageToken.decode("AAAA"));
+    }
+
+    @Test
+    void offsetsRoundTrip() {
+        PageToken token = PageToken.decode(PageToken.after("relevance", new BsonInt32(20), new ObjectId()).encode());
+
+        assertEquals(20, token.offset());
+        assertThrows(IllegalArgumentException.class,
+                () -> PageToken.after("name", new BsonString("Mollie"), new ObjectId()).offset());
+    }
+}
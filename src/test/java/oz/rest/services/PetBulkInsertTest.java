@@ -0,0 +1,129 @@
+package oz.rest.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.validation.Validation;
+import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Pet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PetBulkInsertTest {
+    PetService petService;
+    MongoDatabase db;
+    MongoClient mongoClient;
+    MongoCollection<Pet> collection;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create("mongodb://localhost:27017");
+        CodecRegistry pojoCodecRegistry = fromRegistries(getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        db = mongoClient.getDatabase("test").withCodecRegistry(pojoCodecRegistry);
+        petService = new PetService();
+        petService.db = db;
+        petService.setValidator(Validation.buildDefaultValidatorFactory().getValidator());
+        collection = db.getCollection("Pets", Pet.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.drop();
+        mongoClient.close();
+    }
+
+    List<JsonObject> upload(String ndjson) throws IOException {
+        Response response = petService.addMany(new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(200, response.getStatus());
+
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(report);
+
+        return report.toString(StandardCharsets.UTF_8).lines()
+                .map(line -> Json.createReader(new StringReader(line)).readObject())
+                .toList();
+    }
+
+    @Test
+    void reportsEveryLine() throws IOException {
+        List<JsonObject> report = upload("""
+                {"name": "Mollie", "type": "Dog", "age": 3}
+                not json
+
+                {"name": "", "age": 2}
+                {"name": "Rex", "age": 5}
+                """);
+
+        assertEquals(5, report.size());
+        assertEquals(1, report.get(0).getInt("line"));
+        assertTrue(report.get(0).containsKey("id"));
+        assertEquals("Invalid json!", report.get(1).getJsonArray("errors").getString(0));
+        // the blank line is skipped but still counted
+        assertEquals(4, report.get(2).getInt("line"));
+        assertEquals("Pet name must not be empty", report.get(2).getJsonArray("errors").getString(0));
+        assertEquals(5, report.get(3).getInt("line"));
+
+        assertEquals(2, report.get(4).getInt("inserted"));
+        assertEquals(2, report.get(4).getInt("failed"));
+        assertEquals(2, collection.countDocuments());
+    }
+
+    @Test
+    void insertsInChunks() throws IOException {
+        StringBuilder ndjson = new StringBuilder();
+        int pets = BulkInsert.CHUNK_SIZE * 2 + 10;
+        for (int i = 0; i < pets; i++) {
+            ndjson.append("{\"name\": \"Mollie").append(i).append("\", \"age\": ").append(i % 15).append("}\n");
+        }
+
+        List<JsonObject> report = upload(ndjson.toString());
+
+        assertEquals(pets, report.get(report.size() - 1).getInt("inserted"));
+        assertEquals(pets, collection.countDocuments());
+        assertEquals(pets, report.get(pets - 1).getInt("line"));
+    }
+
+    @Test
+    void takesPetsWithImages() throws IOException {
+        // about what a photo like test-materials/dog.png comes to once encoded
+        String image = "A".repeat(600 * 1024);
+        StringBuilder ndjson = new StringBuilder();
+        for (int i = 0; i < 40; i++) {
+            ndjson.append("{\"name\": \"Mollie").append(i).append("\", \"images\": [\"").append(image).append("\"]}\n");
+        }
+
+        List<JsonObject> report = upload(ndjson.toString());
+
+        assertEquals(40, report.get(report.size() - 1).getInt("inserted"));
+        assertEquals(40, collection.countDocuments());
+    }
+
+    @Test
+    void overlongLinesAreRejected() throws IOException {
+        String name = "x".repeat(BulkInsert.MAX_LINE_LENGTH);
+        List<JsonObject> report = upload("{\"name\": \"" + name + "\"}\n{\"name\": \"Rex\"}");
+
+        assertTrue(report.get(0).containsKey("errors"));
+        assertTrue(report.get(1).containsKey("id"));
+    }
+}
@@ -0,0 +1,123 @@
+package oz.rest.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Pet;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PetFacetsTest {
+    MongoDatabase db;
+    MongoClient mongoClient;
+    MongoCollection<Pet> collection;
+    PetFacets facets;
+
+    @BeforeEach
+    void setUp() {
+        mongoClient = MongoClients.create("mongodb://localhost:27017");
+        CodecRegistry pojoCodecRegistry = fromRegistries(getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        db = mongoClient.getDatabase("test").withCodecRegistry(pojoCodecRegistry);
+        collection = db.getCollection("Pets", Pet.class);
+
+        facets = new PetFacets();
+        facets.db = db;
+
+        // 6 dogs and 4 cats, aged 0 to 9
+        for (int i = 0; i < 10; i++) {
+            collection.insertOne(pet(i < 6 ? "Dog" : "Cat", i));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.drop();
+        mongoClient.close();
+    }
+
+    Pet pet(String type, int age) {
+        Pet pet = new Pet();
+        pet.setName("Mollie" + age);
+        pet.setType(type);
+        pet.setBreed("German Shephard");
+        pet.setAge(age);
+        pet.setSex(age % 2 == 0 ? "Female" : "Male");
+        pet.setSize("Large");
+        return pet;
+    }
+
+    JsonObject count(PetFilter filter) {
+        return Json.createReader(new StringReader(facets.count(filter))).readObject();
+    }
+
+    long countOf(JsonArray counts, String field, String value) {
+        return counts.stream()
+                .map(c -> c.asJsonObject())
+                .filter(c -> c.get(field).toString().replace("\"", "").equals(value))
+                .mapToLong(c -> c.getJsonNumber("count").longValue())
+                .findFirst().orElse(0);
+    }
+
+    @Test
+    void countsEveryFacet() {
+        JsonObject counts = count(new PetFilter());
+
+        assertEquals(6, countOf(counts.getJsonArray("type"), "value", "Dog"));
+        assertEquals(4, countOf(counts.getJsonArray("type"), "value", "Cat"));
+        assertEquals(10, countOf(counts.getJsonArray("breed"), "value", "German Shephard"));
+        assertEquals(5, countOf(counts.getJsonArray("sex"), "value", "Female"));
+        // 0 | 1 2 | 3 4 5 6 7 | 8 9
+        assertEquals(1, countOf(counts.getJsonArray("age"), "from", "0"));
+        assertEquals(2, countOf(counts.getJsonArray("age"), "from", "1"));
+        assertEquals(5, countOf(counts.getJsonArray("age"), "from", "3"));
+        assertEquals(2, countOf(counts.getJsonArray("age"), "from", "8"));
+    }
+
+    @Test
+    void countsOnlyMatchingPets() {
+        JsonObject counts = count(new PetFilter(null, null, List.of("Cat"), null, null, null, null, null, null, null));
+
+        assertEquals(0, countOf(counts.getJsonArray("type"), "value", "Dog"));
+        assertEquals(4, countOf(counts.getJsonArray("type"), "value", "Cat"));
+    }
+
+    @Test
+    void petsWithoutAValueArentCounted() {
+        Pet pet = pet("Dog", 4);
+        pet.setBreed(null);
+        collection.insertOne(pet);
+
+        JsonArray breeds = count(new PetFilter()).getJsonArray("breed");
+        assertEquals(1, breeds.size());
+        assertEquals(10, countOf(breeds, "value", "German Shephard"));
+        assertEquals(7, countOf(count(new PetFilter()).getJsonArray("type"), "value", "Dog"));
+    }
+
+    @Test
+    void cachedUntilAPetIsWritten() {
+        PetFilter filter = new PetFilter();
+        count(filter);
+
+        collection.insertOne(pet("Dog", 4));
+        assertEquals(6, countOf(count(filter).getJsonArray("type"), "value", "Dog"));
+
+        facets.onWrite(new ModelWrite(ModelWrite.Kind.INSERT, Pet.class, null, null));
+        assertEquals(7, countOf(count(filter).getJsonArray("type"), "value", "Dog"));
+    }
+}
@@ -0,0 +1,179 @@
+package oz.rest.services;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.codecs.pojo.PojoCodecProvider;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import oz.rest.IndexBootstrap;
+import oz.rest.models.Pet;
+
+import java.util.List;
+
+import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
+import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
+import static org.bson.codecs.configuration.CodecRegistries.fromRegistries;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every common pet search shape has to be answered by one of the indexes Pet
+ * declares. If a new filter shows up here as a COLLSCAN, it needs an index too.
+ */
+class PetIndexExplainTest {
+    MongoDatabase db;
+    MongoClient mongoClient;
+    MongoCollection<Pet> collection;
+
+    @BeforeEach
+    void setUp() {
+        // same set up as the other service tests, against a local mongo
+        mongoClient = MongoClients.create("mongodb://localhost:27017");
+        CodecRegistry pojoCodecRegistry = fromRegistries(getDefaultCodecRegistry(),
+                fromProviders(PojoCodecProvider.builder().automatic(true).build()));
+        db = mongoClient.getDatabase("test").withCodecRegistry(pojoCodecRegistry);
+        collection = db.getCollection("Pets", Pet.class);
+
+        IndexBootstrap.createIndexes(collection, Pet.class);
+
+        for (int i = 0; i < 20; i++) {
+            Pet pet = new Pet();
+            pet.setName("Mollie" + i);
+            pet.setCurrentShelterId("s" + (i % 3));
+            pet.setType(i % 2 == 0 ? "Dog" : "Cat");
+            pet.setBreed("German Shephard");
+            pet.setColor("black");
+            pet.setHealth("healthy");
+            pet.setAge(i % 12);
+            pet.setSex(i % 2 == 0 ? "Female" : "Male");
+            pet.setSize("Large");
+            pet.setTemperament(i == 7 ? "calm" : "playful");
+            pet.setDescription(i == 7 ? "A calm senior lab who loves naps" : "Young and full of energy");
+            collection.insertOne(pet);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        db.drop();
+        mongoClient.close();
+    }
+
+    PetFilter filter(String name, String shelter, List<String> type, String breed, String color, String health,
+            Integer minAge, Integer maxAge, String sex, String size) {
+        return new PetFilter(name, shelter, type, breed, color, health, minAge, maxAge, sex, size);
+    }
+
+    void assertIndexed(Bson query, Bson sort) {
+        Document explain = collection.find(query).sort(sort).explain();
+        Document queryPlanner = explain.get("queryPlanner", Document.class);
+
+        assertFalse(hasCollectionScan(queryPlanner.get("winningPlan")),
+                "COLLSCAN for " + query.toBsonDocument().toJson() + ": " + queryPlanner.toJson());
+    }
+
+    // the index has to give the order too, not just find the documents
+    void assertSortedByIndex(Bson query, Bson sort) {
+        assertIndexed(query, sort);
+        Document queryPlanner = collection.find(query).sort(sort).explain().get("queryPlanner", Document.class);
+
+        assertFalse(hasStage(queryPlanner.get("winningPlan"), "SORT"),
+                "In memory SORT for " + sort.toBsonDocument().toJson() + ": " + queryPlanner.toJson());
+    }
+
+    void assertIndexed(PetFilter filter) {
+        assertIndexed(filter.toBson(), PageToken.sort(null));
+    }
+
+    // newer servers nest the plan a level deeper, so just look everywhere
+    boolean hasCollectionScan(Object plan) {
+        return hasStage(plan, "COLLSCAN");
+    }
+
+    boolean hasStage(Object plan, String stage) {
+        if (plan instanceof Document document) {
+            if (stage.equals(document.get("stage"))) {
+                return true;
+            }
+            return document.values().stream().anyMatch(value -> hasStage(value, stage));
+        }
+        if (plan instanceof List<?> list) {
+            return list.stream().anyMatch(value -> hasStage(value, stage));
+        }
+        return false;
+    }
+
+    @Test
+    void byShelter() {
+        assertIndexed(filter(null, "s1", null, null, null, null, null, null, null, null));
+        assertIndexed(filter(null, "s1", List.of("Dog", "Cat"), null, null, null, null, null, null, null));
+        assertIndexed(filter(null, "s1", List.of("Dog"), null, null, null, 1, 5, null, null));
+    }
+
+    @Test
+    void byTypeSexAndSize() {
+        assertIndexed(filter(null, null, List.of("Dog"), null, null, null, null, null, null, null));
+        assertIndexed(filter(null, null, List.of("Dog"), null, null, null, null, null, "Female", "Large"));
+        assertIndexed(filter(null, null, List.of("Dog", "Cat"), null, null, null, 2, 8, "Female", "Large"));
+    }
+
+    @Test
+    void bySexAndSize() {
+        assertIndexed(filter(null, null, null, null, null, null, null, null, "Female", null));
+        assertIndexed(filter(null, null, null, null, null, null, 0, 3, "Male", "Large"));
+    }
+
+    @Test
+    void byBreed() {
+        assertIndexed(filter(null, null, null, "German Shephard", null, null, null, null, null, null));
+        assertIndexed(filter(null, null, null, "German Shephard", null, null, null, 4, null, null));
+    }
+
+    @Test
+    void byColorOrHealth() {
+        assertIndexed(filter(null, null, null, null, "black", null, null, null, null, null));
+        assertIndexed(filter(null, null, null, null, null, "healthy", null, null, null, null));
+    }
+
+    @Test
+    void byAgeOrName() {
+        assertIndexed(filter(null, null, null, null, null, null, 1, 3, null, null));
+        assertIndexed(filter("Mollie3", null, null, null, null, null, null, null, null, null));
+    }
+
+    @Test
+    void keysetSorts() {
+        assertSortedByIndex(new PetFilter().toBson(), PageToken.sort("age"));
+        assertSortedByIndex(new PetFilter().toBson(), PageToken.sort("name"));
+    }
+
+    @Test
+    void byText() {
+        PetFilter filter = new PetFilter();
+        filter.setQ("calm senior");
+        assertIndexed(filter);
+
+        PetFilter withType = filter(null, null, List.of("Cat"), null, null, null, null, null, null, null);
+        withType.setQ("calm senior");
+        assertIndexed(withType);
+    }
+
+    @Test
+    void textMatchesAreRankedFirst() {
+        PetFilter filter = new PetFilter();
+        filter.setQ("calm senior lab");
+
+        Pet best = collection.find(filter.toBson())
+                .sort(Sorts.metaTextScore("score"))
+                .first();
+
+        assertNotNull(best);
+        assertEquals("Mollie7", best.getName());
+    }
+}
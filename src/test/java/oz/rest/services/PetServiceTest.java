@@ -6,8 +6,11 @@ import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.IndexOptions;
 import jakarta.validation.Validation;
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
 import jakarta.validation.ValidatorFactory;
 import jakarta.ws.rs.core.Response;
+import jakarta.ws.rs.core.StreamingOutput;
 import org.bson.Document;
 import org.bson.codecs.configuration.CodecProvider;
 import org.bson.codecs.configuration.CodecRegistry;
@@ -23,7 +26,11 @@ import org.jboss.weld.junit5.*;
 import oz.rest.models.Pet;
 import oz.rest.models.Shelter;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
@@ -71,7 +78,7 @@ class PetServiceTest {
     }
     private void createUniqueEmailAdopter(MongoCollection<Adopter> adopterCollection) {
         IndexOptions indexOptions = new IndexOptions().unique(true);
-        adopterCollection.createIndex(new Document("emailAddress", 1), indexOptions);
+        adopterCollection.createIndex(new Document("email_address", 1), indexOptions);
     }
     private void createUniqueEmailShelter(MongoCollection<Shelter> shelterCollection) {
         IndexOptions indexOptions = new IndexOptions().unique(true);
@@ -1087,4 +1094,45 @@ class PetServiceTest {
         Response r = petService.remove("dog");
         assertEquals(400, r.getStatus());
     }
-}
\ No newline at end of file
+
+    String readEntity(Response response) {
+        if (response.getEntity() instanceof StreamingOutput output) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                output.write(out);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+        return (String) response.getEntity();
+    }
+
+    @Test
+    void findWithoutPagingIsAPlainList() {
+        for (String name : List.of("spots", "dots")) {
+            petService.add(generatePet(name, "s1", null, "Dog", "Schnauzer", "gray", "good", 3, "Male", "Small", "calm", "A dog"));
+        }
+
+        Response r = petService.find(null, "s1", null, null, null, null, null, null, null, null, 5, null);
+        assertEquals(200, r.getStatus());
+        assertEquals(2, Json.createReader(new StringReader(readEntity(r))).readArray().size());
+    }
+
+    @Test
+    void keysetPagingIsOptedInto() {
+        for (String name : List.of("spots", "dots", "lots")) {
+            petService.add(generatePet(name, "s1", null, "Dog", "Schnauzer", "gray", "good", 3, "Male", "Small", "calm", "A dog"));
+        }
+
+        PetFilter filter = new PetFilter(null, "s1", null, null, null, null, null, null, null, null);
+        JsonObject first = Json.createReader(new StringReader(
+                readEntity(petService.find(filter, null, 2, null, null, null, "keyset")))).readObject();
+        assertEquals(2, first.getJsonArray("items").size());
+
+        JsonObject second = Json.createReader(new StringReader(
+                readEntity(petService.find(filter, null, 2, null, first.getString("next"), null, null)))).readObject();
+        assertEquals(1, second.getJsonArray("items").size());
+        assertTrue(second.isNull("next"));
+    }
+}
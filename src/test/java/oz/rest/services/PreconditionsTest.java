@@ -0,0 +1,50 @@
+package oz.rest.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PreconditionsTest {
+    final Instant modified = Instant.parse("2024-03-05T10:15:30.250Z");
+
+    @Test
+    void etagsAreQuotedVersions() {
+        assertEquals("\"3\"", Preconditions.etag(3));
+    }
+
+    @Test
+    void httpDatesAreRfc1123() {
+        assertEquals("Tue, 5 Mar 2024 10:15:30 GMT", Preconditions.httpDate(modified));
+    }
+
+    @Test
+    void ifNoneMatch() {
+        assertTrue(Preconditions.isNotModified("\"3\"", null, "\"3\"", modified));
+        assertTrue(Preconditions.isNotModified("\"1\", \"3\"", null, "\"3\"", modified));
+        assertTrue(Preconditions.isNotModified("W/\"3\"", null, "\"3\"", modified));
+        assertTrue(Preconditions.isNotModified("*", null, "\"3\"", modified));
+        assertFalse(Preconditions.isNotModified("\"2\"", null, "\"3\"", modified));
+        assertFalse(Preconditions.isNotModified("3", null, "\"3\"", modified));
+    }
+
+    @Test
+    void ifModifiedSinceGoesBySeconds() {
+        assertTrue(Preconditions.isNotModified(null, "Tue, 5 Mar 2024 10:15:30 GMT", "\"3\"", modified));
+        assertTrue(Preconditions.isNotModified(null, "Tue, 5 Mar 2024 11:00:00 GMT", "\"3\"", modified));
+        assertFalse(Preconditions.isNotModified(null, "Tue, 5 Mar 2024 10:15:29 GMT", "\"3\"", modified));
+    }
+
+    @Test
+    void ifNoneMatchWinsOverIfModifiedSince() {
+        assertFalse(Preconditions.isNotModified("\"2\"", "Tue, 5 Mar 2024 11:00:00 GMT", "\"3\"", modified));
+    }
+
+    @Test
+    void invalidDatesAndMissingTimesAreModified() {
+        assertFalse(Preconditions.isNotModified(null, "yesterday", "\"3\"", modified));
+        assertFalse(Preconditions.isNotModified(null, "Tue, 5 Mar 2024 11:00:00 GMT", "\"0\"", null));
+        assertFalse(Preconditions.isNotModified(null, null, "\"3\"", modified));
+    }
+}
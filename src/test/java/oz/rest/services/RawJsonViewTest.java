@@ -0,0 +1,72 @@
+package oz.rest.services;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RawJsonViewTest {
+    JsonObject transcode(RawJsonView view, Document document) {
+        String json = view.toJson(RawBsonDocument.parse(document.toJson()));
+        return Json.createReader(new StringReader(json)).readObject();
+    }
+
+    @Test
+    void idIsWrittenAsString() {
+        ObjectId id = new ObjectId();
+        JsonObject pet = transcode(RawJsonView.PETS, new Document("_id", id).append("name", "Mollie"));
+
+        assertEquals(id.toHexString(), pet.getString("id"));
+        assertEquals("Mollie", pet.getString("name"));
+        assertFalse(pet.containsKey("_id"));
+    }
+
+    @Test
+    void nestedValuesAreKept() {
+        JsonObject shelter = transcode(RawJsonView.SHELTERS, new Document("_id", new ObjectId())
+                .append("location", new Document("city", "Oswego").append("zipCode", "13126"))
+                .append("images", List.of("a", "b")));
+
+        assertEquals("Oswego", shelter.getJsonObject("location").getString("city"));
+        assertEquals(2, shelter.getJsonArray("images").size());
+    }
+
+    @Test
+    void numbersKeepTheirType() {
+        JsonObject pet = transcode(RawJsonView.PETS, new Document("_id", new ObjectId()).append("age", 3));
+
+        assertEquals(3, pet.getInt("age"));
+    }
+
+    @Test
+    void writeOnlyFieldsAreDropped() {
+        JsonObject shelter = transcode(RawJsonView.SHELTERS, new Document("_id", new ObjectId())
+                .append("name", "Paws").append("password", "hunter2"));
+
+        assertEquals("Paws", shelter.getString("name"));
+        assertFalse(shelter.containsKey("password"));
+    }
+
+    @Test
+    void storedNamesAreRenamed() {
+        JsonObject adopter = transcode(RawJsonView.ADOPTERS, new Document("_id", new ObjectId())
+                .append("email_address", "greg@gmail.com"));
+
+        assertEquals("greg@gmail.com", adopter.getString("emailAddress"));
+        assertFalse(adopter.containsKey("email_address"));
+    }
+
+    @Test
+    void nullsAreLeftOut() {
+        JsonObject pet = transcode(RawJsonView.PETS, new Document("_id", new ObjectId()).append("breed", null));
+
+        assertFalse(pet.containsKey("breed"));
+    }
+}
@@ -0,0 +1,100 @@
+package oz.rest.services;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Shelter;
+
+import java.util.List;
+
+import com.mongodb.client.MongoCollection;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShelterPositionMigrationTest extends ShelterServiceFixture {
+    ShelterPositionMigration migration;
+
+    @BeforeEach
+    void setUpMigration() {
+        migration = new ShelterPositionMigration();
+        migration.db = db;
+        migration.batchSize = 2;
+    }
+
+    MongoCollection<Document> raw() {
+        return db.getCollection("Shelters");
+    }
+
+    // stored the way shelters were before they had a position
+    ObjectId addOldShelter(String name, String latitude, String longitude) {
+        ObjectId id = new ObjectId();
+        raw().insertOne(new Document("_id", id)
+                .append("name", name)
+                .append("emailAddress", name.toLowerCase() + "@gmail.com")
+                .append("latitude", latitude)
+                .append("longitude", longitude));
+        return id;
+    }
+
+    Document progress() {
+        return ShelterPositionMigration.migrations(db).find(eq("_id", ShelterPositionMigration.NAME)).first();
+    }
+
+    @Test
+    void fillsInThePositionsInBatches() {
+        ObjectId amsterdam = addOldShelter("Amsterdam", "42.938", "-74.192");
+        for (int i = 0; i < 4; i++) {
+            addOldShelter("Shelter" + i, "40." + i, "-73." + i);
+        }
+        addOldShelter("Nowhere", "north", "");
+
+        assertEquals(5, migration.run());
+
+        Shelter shelter = collection.find(eq("_id", amsterdam)).first();
+        assertEquals(List.of(-74.192, 42.938), shelter.getPosition().getCoordinates());
+        assertEquals(1, (long) shelter.getVersion());
+
+        assertEquals(1, raw().countDocuments(exists("position", false)));
+        assertEquals(5L, progress().getLong("migrated"));
+        assertEquals(1L, progress().getLong("skipped"));
+        assertTrue(progress().getBoolean("done"));
+
+        // nothing left to do
+        assertEquals(0, migration.run());
+    }
+
+    @Test
+    void resumesAfterTheLastBatch() {
+        ObjectId first = addOldShelter("First", "42.938", "-74.192");
+        ObjectId second = addOldShelter("Second", "40.1", "-73.1");
+
+        // as if it stopped after the first one
+        ShelterPositionMigration.migrations(db).insertOne(new Document("_id", ShelterPositionMigration.NAME)
+                .append("lastId", first)
+                .append("migrated", 1L)
+                .append("skipped", 0L));
+
+        assertEquals(1, migration.run());
+        // the one before lastId isn't looked at again
+        assertNull(raw().find(eq("_id", first)).first().get("position"));
+        assertNotNull(collection.find(eq("_id", second)).first().getPosition());
+        assertEquals(2L, progress().getLong("migrated"));
+    }
+
+    @Test
+    void leavesPositionsAlone() {
+        Shelter shelter = new Shelter();
+        shelter.setName("New");
+        shelter.setEmailAddress("new@gmail.com");
+        shelter.setPassword("password");
+        shelter.setLatitude("42.938");
+        shelter.setLongitude("-74.192");
+        shelterService.add(shelter).close();
+
+        assertEquals(0, migration.run());
+        assertEquals(1, (long) collection.find(eq("_id", shelter.getId())).first().getVersion());
+    }
+}
@@ -0,0 +1,128 @@
+package oz.rest.services;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.core.Response;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Pet;
+import oz.rest.models.Shelter;
+
+import java.io.StringReader;
+
+import com.mongodb.client.MongoCollection;
+
+import static com.mongodb.client.model.Filters.eq;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShelterServiceCascadeTest extends ShelterServiceFixture {
+    String addShelter(String name) {
+        Shelter shelter = new Shelter();
+        shelter.setName(name);
+        shelter.setEmailAddress(name.toLowerCase() + "@gmail.com");
+        shelter.setPassword("password");
+        shelterService.add(shelter).close();
+        return shelter.getId().toHexString();
+    }
+
+    MongoCollection<Pet> pets() {
+        return db.getCollection("Pets", Pet.class);
+    }
+
+    void addPets(String shelterId, int count) {
+        for (int i = 0; i < count; i++) {
+            Pet pet = new Pet();
+            pet.setName("Pet" + i);
+            pet.setCurrentShelterId(shelterId);
+            pets().insertOne(pet);
+        }
+    }
+
+    JsonObject read(Response response) {
+        return Json.createReader(new StringReader((String) response.getEntity())).readObject();
+    }
+
+    @Test
+    void keepsThePetsByDefault() {
+        String id = addShelter("Shelter");
+        addPets(id, 3);
+
+        try (Response response = shelterService.remove(id)) {
+            assertEquals(200, response.getStatus());
+        }
+        assertEquals(3, pets().countDocuments(eq("currentShelterId", id)));
+    }
+
+    @Test
+    void deletesThePets() {
+        String id = addShelter("Shelter");
+        String other = addShelter("Other");
+        addPets(id, 25);
+        addPets(other, 2);
+
+        try (Response response = shelterService.remove(id, "delete", null)) {
+            assertEquals(200, response.getStatus());
+            JsonObject body = read(response);
+            assertEquals(25, body.getInt("petsDeleted"));
+            assertEquals("Shelter", body.getJsonObject("shelter").getString("name"));
+        }
+
+        assertEquals(0, pets().countDocuments(eq("currentShelterId", id)));
+        assertEquals(2, pets().countDocuments());
+        assertEquals(1, collection.countDocuments());
+    }
+
+    @Test
+    void reassignsThePets() {
+        String id = addShelter("Shelter");
+        String other = addShelter("Other");
+        addPets(id, 4);
+
+        try (Response response = shelterService.remove(id, "reassign", other)) {
+            assertEquals(200, response.getStatus());
+            assertEquals(4, read(response).getInt("petsReassigned"));
+        }
+
+        assertEquals(4, pets().countDocuments(eq("currentShelterId", other)));
+    }
+
+    @Test
+    void reassigningNeedsAnotherShelterThatExists() {
+        String id = addShelter("Shelter");
+        addPets(id, 2);
+
+        try (Response response = shelterService.remove(id, "reassign", null)) {
+            assertEquals(400, response.getStatus());
+        }
+        try (Response response = shelterService.remove(id, "reassign", id)) {
+            assertEquals(400, response.getStatus());
+        }
+        try (Response response = shelterService.remove(id, "reassign", new ObjectId().toHexString())) {
+            assertEquals(404, response.getStatus());
+        }
+
+        // nothing was removed
+        assertEquals(1, collection.countDocuments());
+        assertEquals(2, pets().countDocuments(eq("currentShelterId", id)));
+    }
+
+    @Test
+    void rejectsUnknownModes() {
+        String id = addShelter("Shelter");
+
+        try (Response response = shelterService.remove(id, "adopt", null)) {
+            assertEquals(400, response.getStatus());
+        }
+    }
+
+    @Test
+    void missingShelterLeavesThePets() {
+        String id = new ObjectId().toHexString();
+        addPets(id, 2);
+
+        try (Response response = shelterService.remove(id, "delete", null)) {
+            assertEquals(404, response.getStatus());
+        }
+        assertEquals(2, pets().countDocuments());
+    }
+}
@@ -0,0 +1,128 @@
+package oz.rest.services;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.ws.rs.core.Response;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.Test;
+import oz.rest.models.Pet;
+import oz.rest.models.Shelter;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShelterServiceRosterTest extends ShelterServiceFixture {
+    String addShelter(String name) {
+        Shelter shelter = new Shelter();
+        shelter.setName(name);
+        shelter.setEmailAddress(name.toLowerCase() + "@gmail.com");
+        shelter.setPassword("password");
+        shelterService.add(shelter).close();
+        return shelter.getId().toHexString();
+    }
+
+    void addPets(String shelterId, int count) {
+        for (int i = 0; i < count; i++) {
+            Pet pet = new Pet();
+            pet.setName("Pet" + i);
+            pet.setType("Dog");
+            pet.setDescription("A very good dog");
+            pet.setCurrentShelterId(shelterId);
+            pet.setImages(new ArrayList<>(List.of("aW1hZ2U=")));
+            db.getCollection("Pets", Pet.class).insertOne(pet);
+        }
+    }
+
+    JsonObject read(Response response) {
+        return Json.createReader(new StringReader((String) response.getEntity())).readObject();
+    }
+
+    @Test
+    void returnsTheShelterWithItsFirstPage() {
+        String id = addShelter("Shelter");
+        addPets(id, 3);
+        addPets(addShelter("Other"), 2);
+
+        try (Response response = shelterService.roster(id, null, null, null)) {
+            assertEquals(200, response.getStatus());
+            JsonObject body = read(response);
+
+            assertEquals("Shelter", body.getJsonObject("shelter").getString("name"));
+            assertFalse(body.getJsonObject("shelter").containsKey("password"));
+            assertFalse(body.getJsonObject("shelter").containsKey("pets"));
+
+            JsonObject pets = body.getJsonObject("pets");
+            assertEquals(3, pets.getJsonArray("items").size());
+            assertTrue(pets.isNull("next"));
+            // too big to send a page of
+            assertFalse(pets.getJsonArray("items").getJsonObject(0).containsKey("images"));
+            assertEquals("A very good dog", pets.getJsonArray("items").getJsonObject(0).getString("description"));
+        }
+    }
+
+    @Test
+    void pagesThroughEveryPetOnce() {
+        String id = addShelter("Shelter");
+        addPets(id, 7);
+
+        Set<String> seen = new HashSet<>();
+        String next = null;
+        int pages = 0;
+        do {
+            try (Response response = shelterService.roster(id, 3, next, null)) {
+                JsonObject pets = read(response).getJsonObject("pets");
+                JsonArray items = pets.getJsonArray("items");
+                for (int i = 0; i < items.size(); i++) {
+                    assertTrue(seen.add(items.getJsonObject(i).getString("id")));
+                }
+                next = pets.isNull("next") ? null : pets.getString("next");
+            }
+            pages++;
+        } while (next != null);
+
+        assertEquals(7, seen.size());
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void summaryLeavesOutTheRest() {
+        String id = addShelter("Shelter");
+        addPets(id, 1);
+
+        try (Response response = shelterService.roster(id, null, null, "summary")) {
+            JsonObject pet = read(response).getJsonObject("pets").getJsonArray("items").getJsonObject(0);
+            assertEquals("Pet0", pet.getString("name"));
+            assertFalse(pet.containsKey("description"));
+            assertFalse(pet.containsKey("currentShelterId"));
+            assertFalse(pet.containsKey("images"));
+        }
+    }
+
+    @Test
+    void emptyShelter() {
+        String id = addShelter("Shelter");
+
+        try (Response response = shelterService.roster(id, null, null, null)) {
+            assertEquals(200, response.getStatus());
+            assertEquals(0, read(response).getJsonObject("pets").getJsonArray("items").size());
+        }
+    }
+
+    @Test
+    void badRequests() {
+        String id = addShelter("Shelter");
+
+        assertEquals(404, shelterService.roster(new ObjectId().toHexString(), null, null, null).getStatus());
+        assertEquals(400, shelterService.roster("nope", null, null, null).getStatus());
+        assertEquals(400, shelterService.roster(id, 0, null, null).getStatus());
+        assertEquals(400, shelterService.roster(id, ShelterService.MAX_ROSTER_PAGE_SIZE + 1, null, null).getStatus());
+        assertEquals(400, shelterService.roster(id, null, "nope", null).getStatus());
+        assertEquals(400, shelterService.roster(id, null, null, "everything").getStatus());
+    }
+}
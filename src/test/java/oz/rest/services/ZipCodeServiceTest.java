@@ -9,6 +9,7 @@ import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
 import jakarta.validation.Validation;
 import jakarta.validation.ValidatorFactory;
 import jakarta.ws.rs.core.Response;
@@ -21,11 +22,15 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import oz.rest.geo.ZipCentroids;
+import oz.rest.geo.ZipCodeLocator;
 import oz.rest.models.Adopter;
 import oz.rest.models.Shelter;
 import oz.rest.models.ZipCode;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 import static com.mongodb.MongoClientSettings.getDefaultCodecRegistry;
 import static org.bson.codecs.configuration.CodecRegistries.fromProviders;
@@ -40,7 +45,7 @@ class ZipCodeServiceTest {
     MongoClient mongoClient;
 
     @BeforeEach
-    void setUp() {
+    void setUp() throws IOException {
         // declare mongo client and set up codec provider for serialization.
         // this is similar to what is done in MongoProducer but due to it not
         // being a part of our set of services under test, logic is internally
@@ -56,6 +61,12 @@ class ZipCodeServiceTest {
         // mock validator
         ValidatorFactory factory = Validation.buildDefaultValidatorFactory();
         zipCodeService.validator = factory.getValidator();
+        // a one zip code table, so the tests don't need mapbox
+        Path centroids = Files.createTempFile("zip-centroids", ".bin");
+        centroids.toFile().deleteOnExit();
+        ZipCentroids.write(centroids, new int[] { 12010 }, new float[] { 42.938f }, new float[] { -74.192f });
+        zipCodeService.locator = new ZipCodeLocator();
+        zipCodeService.locator.load(centroids);
         initializeCollections(db);
     }
 
@@ -66,11 +77,13 @@ class ZipCodeServiceTest {
     }
     private void createUniqueEmailAdopter(MongoCollection<Adopter> adopterCollection) {
         IndexOptions indexOptions = new IndexOptions().unique(true);
-        adopterCollection.createIndex(new Document("emailAddress", 1), indexOptions);
+        adopterCollection.createIndex(new Document("email_address", 1), indexOptions);
     }
     private void createUniqueEmailShelter(MongoCollection<Shelter> shelterCollection) {
         IndexOptions indexOptions = new IndexOptions().unique(true);
         shelterCollection.createIndex(new Document("emailAddress", 1), indexOptions);
+        // $geoNear needs it, IndexBootstrap makes it from @GeoIndex
+        shelterCollection.createIndex(Indexes.geo2dsphere("position"));
     }
 
     @AfterEach
@@ -112,6 +125,21 @@ class ZipCodeServiceTest {
         assert false;
     }
     @Test
+    void unknownZipCodesAreBadRequests() throws IOException {
+        ZipCode zipCode = new ZipCode();
+        zipCode.setZipCode("99999");
+        assertEquals(400, zipCodeService.processZipCode(zipCode).getStatus());
+    }
+    @Test
+    void limitAndRadiusAreChecked() throws IOException {
+        ZipCode zipCode = new ZipCode();
+        zipCode.setZipCode("12010");
+        assertEquals(400, zipCodeService.processZipCode(zipCode, 0, null).getStatus());
+        assertEquals(400, zipCodeService.processZipCode(zipCode, ZipCodeService.MAX_LIMIT + 1, null).getStatus());
+        assertEquals(400, zipCodeService.processZipCode(zipCode, null, -1.0).getStatus());
+        assertEquals(200, zipCodeService.processZipCode(zipCode, 5, 50.0).getStatus());
+    }
+    @Test
     void testcase_d_2_1_1(){
         //properly formatted zipcode object
         ZipCode zipCode = new ZipCode();
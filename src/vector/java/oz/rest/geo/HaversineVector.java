@@ -0,0 +1,44 @@
+package oz.rest.geo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link Haversine}'s batch on the incubator Vector API, as many points at a
+ * time as the cpu's widest registers hold, and the leftovers on the scalar
+ * loop. Only compiled with the vector profile and only ever loaded by name,
+ * when jdk.incubator.vector is there and geo.haversine.vector is true.
+ */
+final class HaversineVector implements Haversine.Kernel {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double TO_RADIANS = Math.PI / 180;
+
+    @Override
+    public void distancesKm(double latitude, double longitude, double[] latitudes, double[] longitudes, int from,
+            int to, double[] out, int offset) {
+        double lat1 = Math.toRadians(latitude);
+        double cosLat1 = Math.cos(lat1);
+        double lon1 = Math.toRadians(longitude);
+
+        int i = from;
+        int bound = from + SPECIES.loopBound(to - from);
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector lat2 = DoubleVector.fromArray(SPECIES, latitudes, i).mul(TO_RADIANS);
+            DoubleVector lon2 = DoubleVector.fromArray(SPECIES, longitudes, i).mul(TO_RADIANS);
+
+            DoubleVector sinLat = lat2.sub(lat1).mul(0.5).lanewise(VectorOperators.SIN);
+            DoubleVector sinLon = lon2.sub(lon1).mul(0.5).lanewise(VectorOperators.SIN);
+            DoubleVector a = sinLat.mul(sinLat)
+                    .add(lat2.lanewise(VectorOperators.COS).mul(cosLat1).mul(sinLon.mul(sinLon)));
+
+            a.lanewise(VectorOperators.SQRT)
+                    .min(1.0)
+                    .lanewise(VectorOperators.ASIN)
+                    .mul(2 * Haversine.EARTH_RADIUS_KM)
+                    .intoArray(out, offset + i - from);
+        }
+
+        Haversine.scalar(latitude, longitude, latitudes, longitudes, i, to, out, offset + i - from);
+    }
+}